@@ -0,0 +1,106 @@
+/**
+ * Adaptive Replacement Cache (ARC) eviction policy.
+ *
+ * Resident keys are split between T1, seen once recently, and T2, seen at
+ * least twice. Keys evicted from each list are remembered, without their
+ * values, in ghost lists B1 and B2. A miss on a B1 ghost means T1 was too
+ * small, so the target size p of T1 grows; a miss on a B2 ghost shrinks it.
+ * Eviction takes the LRU key of T1 while T1 is above p, otherwise that of
+ * T2, so the split between recency and frequency follows the workload.
+ *
+ * The cache asks for a victim before it adds the key that needs the room,
+ * so unlike the original REPLACE step the choice cannot depend on whether
+ * that key is a B2 ghost; p has adapted by the next eviction anyway.
+ */
+public class ARCEvictionPolicy<K, V> implements EvictionPolicy<K, V> {
+    private final int capacity;
+    private final LinkedHashSet<K> t1;
+    private final LinkedHashSet<K> t2;
+    private final LinkedHashSet<K> b1;
+    private final LinkedHashSet<K> b2;
+    private int p;
+    
+    public ARCEvictionPolicy(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.t1 = new LinkedHashSet<>();
+        this.t2 = new LinkedHashSet<>();
+        this.b1 = new LinkedHashSet<>();
+        this.b2 = new LinkedHashSet<>();
+    }
+    
+    @Override
+    public synchronized void onAccess(K key, V value) {
+        if (t1.remove(key) || t2.remove(key)) {
+            t2.add(key);
+        }
+    }
+    
+    @Override
+    public synchronized void onAdd(K key, V value) {
+        if (t1.remove(key) || t2.remove(key)) {
+            t2.add(key);
+        } else if (b1.remove(key)) {
+            p = Math.min(capacity, p + Math.max(b2.size() / Math.max(1, b1.size()), 1));
+            t2.add(key);
+        } else if (b2.remove(key)) {
+            p = Math.max(0, p - Math.max(b1.size() / Math.max(1, b2.size()), 1));
+            t2.add(key);
+        } else {
+            t1.add(key);
+        }
+        trimGhosts(0);
+    }
+    
+    @Override
+    public synchronized void onRemove(K key) {
+        if (!t1.remove(key) && !t2.remove(key) && !b1.remove(key)) {
+            b2.remove(key);
+        }
+    }
+    
+    @Override
+    public synchronized K getEvictionCandidate() {
+        K victim;
+        if (!t1.isEmpty() && (t1.size() > p || t2.isEmpty())) {
+            victim = eldest(t1);
+            t1.remove(victim);
+            b1.add(victim);
+        } else if (!t2.isEmpty()) {
+            victim = eldest(t2);
+            t2.remove(victim);
+            b2.add(victim);
+        } else {
+            return null;
+        }
+        // Keep one ghost over the bounds: the key about to be added may be it
+        trimGhosts(1);
+        return victim;
+    }
+    
+    /**
+     * Target size of T1, between 0 and the capacity
+     */
+    public synchronized int getTarget() {
+        return p;
+    }
+    
+    /**
+     * Keeps T1 + B1 within the capacity and all four lists within twice it,
+     * plus the given slack
+     */
+    private void trimGhosts(int slack) {
+        while (t1.size() + b1.size() > capacity + slack && !b1.isEmpty()) {
+            b1.remove(eldest(b1));
+        }
+        while (t1.size() + t2.size() + b1.size() + b2.size() > 2 * capacity + slack && !b2.isEmpty()) {
+            b2.remove(eldest(b2));
+        }
+    }
+    
+    private static <K> K eldest(LinkedHashSet<K> keys) {
+        return keys.iterator().next();
+    }
+}
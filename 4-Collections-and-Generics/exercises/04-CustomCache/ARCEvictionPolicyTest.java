@@ -0,0 +1,67 @@
+/**
+ * Test cases for ARCEvictionPolicy
+ */
+public class ARCEvictionPolicyTest {
+    private static final int CAPACITY = 4;
+    
+    private ARCEvictionPolicy<Integer, Integer> policy;
+    private CustomCache<Integer, Integer> cache;
+    
+    @BeforeEach
+    void setUp() {
+        policy = new ARCEvictionPolicy<>(CAPACITY);
+        cache = new CustomCache<>(CAPACITY, policy);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        cache.shutdown();
+    }
+    
+    @Test
+    void testFrequentKeysSurviveScan() {
+        for (int key = 0; key < 2; key++) {
+            cache.put(key, key, 0);
+            cache.getIfPresent(key);
+        }
+        for (int key = 100; key < 200; key++) {
+            cache.put(key, key, 0);
+        }
+        
+        assertEquals(Integer.valueOf(0), cache.getIfPresent(0));
+        assertEquals(Integer.valueOf(1), cache.getIfPresent(1));
+    }
+    
+    @Test
+    void testRecencyGhostHitGrowsTarget() {
+        for (int key = 0; key < CAPACITY; key++) {
+            cache.put(key, key, 0);
+        }
+        cache.getIfPresent(3); // 3 moves to the frequency list
+        cache.put(4, 4, 0); // evicts 0 into the recency ghost list
+        assertNull(cache.getIfPresent(0));
+        assertEquals(0, policy.getTarget());
+        
+        cache.put(0, 0, 0);
+        assertEquals(1, policy.getTarget());
+        assertEquals(Integer.valueOf(0), cache.getIfPresent(0));
+    }
+    
+    @Test
+    void testFrequencyGhostHitShrinksTarget() {
+        for (int key = 0; key < CAPACITY; key++) {
+            cache.put(key, key, 0);
+        }
+        for (int key = 0; key < CAPACITY - 1; key++) {
+            cache.getIfPresent(key); // 0, 1 and 2 move to the frequency list
+        }
+        cache.put(4, 4, 0); // evicts 3 into the recency ghost list
+        cache.put(3, 3, 0);
+        assertEquals(1, policy.getTarget());
+        
+        cache.put(5, 5, 0); // the recency list is empty, so 0 is evicted into the frequency ghost list
+        cache.put(0, 0, 0);
+        assertEquals(0, policy.getTarget());
+        assertEquals(Integer.valueOf(0), cache.getIfPresent(0));
+    }
+}
@@ -0,0 +1,278 @@
+/**
+ * Eviction policy that picks among several candidate policies at runtime.
+ *
+ * A small hashed sample of the keys is replayed against a shadow cache per
+ * candidate, each scaled down to the sample's share of the capacity. Every
+ * epoch the shadows' hit rates are compared, and when another candidate
+ * beats the live one by a clear margin for several epochs in a row, the
+ * live policy is rebuilt from that candidate and seeded with the resident
+ * keys in recency order.
+ *
+ * Reads only append the key to a lossy ReadBuffer; the buffered accesses
+ * are replayed against the live policy and the shadows under the lock,
+ * by whichever thread next writes or finds the buffer full.
+ */
+public class AdaptivePolicy<K, V> implements EvictionPolicy<K, V> {
+    private static final int MIN_SHADOW_CAPACITY = 64;
+    private static final int SAMPLE_DIVISOR = 64;
+    private static final int EPOCH_REQUESTS = 1_000;
+    private static final double SWITCH_MARGIN = 0.02;
+    private static final int SWITCH_EPOCHS = 3;
+    
+    private final int maximumSize;
+    private final Map<String, IntFunction<EvictionPolicy<K, V>>> candidates;
+    private final List<Shadow<K, V>> shadows;
+    private final LinkedHashMap<K, Boolean> residents;
+    private final int sampleThreshold;
+    private final ReadBuffer<K> readBuffer;
+    private final ReentrantLock lock;
+    private EvictionPolicy<K, V> live;
+    private Shadow<K, V> liveShadow;
+    private Shadow<K, V> challenger;
+    private int challengerEpochs;
+    private int epochRequests;
+    private CacheStats stats;
+    
+    /**
+     * Creates an adaptive policy over LRU, LFU, FIFO, ARC and W-TinyLFU, starting with LRU
+     */
+    public static <K, V> AdaptivePolicy<K, V> withDefaultCandidates(int maximumSize) {
+        Map<String, IntFunction<EvictionPolicy<K, V>>> candidates = new LinkedHashMap<>();
+        candidates.put("LRU", size -> new LRUEvictionPolicy<>());
+        candidates.put("LFU", size -> new LFUEvictionPolicy<>());
+        candidates.put("FIFO", size -> new FIFOEvictionPolicy<>());
+        candidates.put("ARC", ARCEvictionPolicy::new);
+        candidates.put("W-TinyLFU", WTinyLFUEvictionPolicy::new);
+        return new AdaptivePolicy<>(maximumSize, candidates, "LRU");
+    }
+    
+    /**
+     * @param candidates policy factories by name, each taking a capacity
+     * @param initial name of the candidate that starts as the live policy
+     */
+    public AdaptivePolicy(int maximumSize, Map<String, IntFunction<EvictionPolicy<K, V>>> candidates,
+                          String initial) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        if (!candidates.containsKey(initial)) {
+            throw new IllegalArgumentException("Unknown initial policy: " + initial);
+        }
+        this.maximumSize = maximumSize;
+        this.candidates = new LinkedHashMap<>(candidates);
+        this.residents = new LinkedHashMap<>(16, 0.75f, true);
+        this.readBuffer = new ReadBuffer<>();
+        this.lock = new ReentrantLock();
+        
+        int shadowCapacity = Math.min(maximumSize,
+            Math.max(MIN_SHADOW_CAPACITY, maximumSize / SAMPLE_DIVISOR));
+        this.sampleThreshold = (int) Math.ceil(65536.0 * shadowCapacity / maximumSize);
+        this.shadows = new ArrayList<>();
+        for (Map.Entry<String, IntFunction<EvictionPolicy<K, V>>> candidate : this.candidates.entrySet()) {
+            shadows.add(new Shadow<>(candidate.getKey(), candidate.getValue().apply(shadowCapacity),
+                shadowCapacity));
+        }
+        this.live = candidates.get(initial).apply(maximumSize);
+        this.liveShadow = shadowNamed(initial);
+    }
+    
+    @Override
+    public void bindStats(CacheStats stats) {
+        lock.lock();
+        try {
+            this.stats = stats;
+            stats.recordActivePolicy(liveShadow.name);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public void onAccess(K key, V value) {
+        if (readBuffer.offer(key) == ReadBuffer.Status.FULL && lock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+    
+    @Override
+    public void onAdd(K key, V value) {
+        lock.lock();
+        try {
+            drainReadBuffer();
+            residents.put(key, Boolean.TRUE);
+            live.onAdd(key, value);
+            sample(key, value);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public void onRemove(K key) {
+        lock.lock();
+        try {
+            drainReadBuffer();
+            residents.remove(key);
+            live.onRemove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public K getEvictionCandidate() {
+        lock.lock();
+        try {
+            drainReadBuffer();
+            K victim = live.getEvictionCandidate();
+            if (victim != null) {
+                residents.remove(victim);
+            }
+            return victim;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public String getActivePolicy() {
+        lock.lock();
+        try {
+            return liveShadow.name;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void drainReadBuffer() {
+        readBuffer.drainTo(this::replayAccess);
+    }
+    
+    /**
+     * Applies a buffered read; the key may have been removed since
+     */
+    private void replayAccess(K key) {
+        if (residents.get(key) != null) {
+            live.onAccess(key, null);
+        }
+        sample(key, null);
+    }
+    
+    private void sample(K key, V value) {
+        if ((spread(key.hashCode()) & 0xFFFF) >= sampleThreshold) {
+            return;
+        }
+        for (Shadow<K, V> shadow : shadows) {
+            shadow.request(key, value);
+        }
+        if (++epochRequests >= EPOCH_REQUESTS) {
+            endEpoch();
+        }
+    }
+    
+    private void endEpoch() {
+        Shadow<K, V> best = liveShadow;
+        for (Shadow<K, V> shadow : shadows) {
+            if (stats != null) {
+                stats.recordCandidateHitRate(shadow.name, shadow.epochHitRate());
+            }
+            if (shadow.epochHitRate() > best.epochHitRate()) {
+                best = shadow;
+            }
+        }
+        
+        // Require a sustained lead from the same candidate before paying for a switch
+        if (best != liveShadow && best.epochHitRate() - liveShadow.epochHitRate() >= SWITCH_MARGIN) {
+            challengerEpochs = best == challenger ? challengerEpochs + 1 : 1;
+            challenger = best;
+        } else {
+            challenger = null;
+            challengerEpochs = 0;
+        }
+        if (challengerEpochs >= SWITCH_EPOCHS) {
+            switchTo(challenger);
+        }
+        
+        for (Shadow<K, V> shadow : shadows) {
+            shadow.resetEpoch();
+        }
+        epochRequests = 0;
+    }
+    
+    private void switchTo(Shadow<K, V> target) {
+        EvictionPolicy<K, V> next = candidates.get(target.name).apply(maximumSize);
+        for (K key : residents.keySet()) {
+            next.onAdd(key, null); // least recently used first
+        }
+        live = next;
+        liveShadow = target;
+        challenger = null;
+        challengerEpochs = 0;
+        if (stats != null) {
+            stats.recordPolicySwitch(target.name);
+        }
+    }
+    
+    private Shadow<K, V> shadowNamed(String name) {
+        for (Shadow<K, V> shadow : shadows) {
+            if (shadow.name.equals(name)) {
+                return shadow;
+            }
+        }
+        throw new IllegalStateException("No shadow for " + name);
+    }
+    
+    private static int spread(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+    
+    /**
+     * Key-only simulation of one candidate at the sample's capacity
+     */
+    private static final class Shadow<K, V> {
+        final String name;
+        final EvictionPolicy<K, V> policy;
+        final Set<K> keys;
+        final int capacity;
+        int hits;
+        int requests;
+        
+        Shadow(String name, EvictionPolicy<K, V> policy, int capacity) {
+            this.name = name;
+            this.policy = policy;
+            this.keys = new HashSet<>();
+            this.capacity = capacity;
+        }
+        
+        void request(K key, V value) {
+            requests++;
+            if (keys.contains(key)) {
+                hits++;
+                policy.onAccess(key, value);
+                return;
+            }
+            while (keys.size() >= capacity) {
+                K victim = policy.getEvictionCandidate();
+                if (victim == null) {
+                    break;
+                }
+                keys.remove(victim);
+            }
+            keys.add(key);
+            policy.onAdd(key, value);
+        }
+        
+        double epochHitRate() {
+            return requests == 0 ? 0.0 : (double) hits / requests;
+        }
+        
+        void resetEpoch() {
+            hits = 0;
+            requests = 0;
+        }
+    }
+}
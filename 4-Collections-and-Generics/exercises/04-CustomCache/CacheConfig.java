@@ -0,0 +1,111 @@
+/**
+ * Configuration for CustomCache
+ */
+public class CacheConfig<K, V> {
+    private final int maxSize;
+    private final long maxWeight;
+    private final Weigher<K, V> weigher;
+    private final MappedTier<K, V> secondTier;
+    private final Ticker ticker;
+    private final CacheWriter<K, V> writer;
+    private final InvalidationChannel<K> invalidationChannel;
+    private final double pressureThreshold;
+    private final double pressureTarget;
+    
+    private CacheConfig(Builder<K, V> builder) {
+        this.maxSize = builder.maxSize;
+        this.maxWeight = builder.maxWeight;
+        this.weigher = builder.weigher;
+        this.secondTier = builder.secondTier;
+        this.ticker = builder.ticker;
+        this.writer = builder.writer;
+        this.invalidationChannel = builder.invalidationChannel;
+        this.pressureThreshold = builder.pressureThreshold;
+        this.pressureTarget = builder.pressureTarget;
+    }
+    
+    // Getters
+    public int getMaxSize() { return maxSize; }
+    public long getMaxWeight() { return maxWeight; }
+    public Weigher<K, V> getWeigher() { return weigher; }
+    public MappedTier<K, V> getSecondTier() { return secondTier; }
+    public Ticker getTicker() { return ticker; }
+    public CacheWriter<K, V> getWriter() { return writer; }
+    public InvalidationChannel<K> getInvalidationChannel() { return invalidationChannel; }
+    public double getPressureThreshold() { return pressureThreshold; }
+    public double getPressureTarget() { return pressureTarget; }
+    public boolean isPressureEvictionEnabled() { return pressureThreshold > 0; }
+    
+    public static class Builder<K, V> {
+        private int maxSize = Integer.MAX_VALUE;
+        private long maxWeight = Long.MAX_VALUE;
+        private Weigher<K, V> weigher = Weigher.singleton();
+        private MappedTier<K, V> secondTier;
+        private Ticker ticker = Ticker.system();
+        private CacheWriter<K, V> writer;
+        private InvalidationChannel<K> invalidationChannel;
+        private double pressureThreshold;
+        private double pressureTarget;
+        
+        public Builder<K, V> maxSize(int maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+        
+        /**
+         * Bounds the cache by the total weight reported by the weigher
+         */
+        public Builder<K, V> maxWeight(long maxWeight, Weigher<K, V> weigher) {
+            this.maxWeight = maxWeight;
+            this.weigher = weigher;
+            return this;
+        }
+        
+        public Builder<K, V> secondTier(MappedTier<K, V> secondTier) {
+            this.secondTier = secondTier;
+            return this;
+        }
+        
+        public Builder<K, V> ticker(Ticker ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+        
+        /**
+         * Propagates every put to a store, e.g. through a WriteThroughWriter
+         * or WriteBehindWriter
+         */
+        public Builder<K, V> writer(CacheWriter<K, V> writer) {
+            this.writer = writer;
+            return this;
+        }
+        
+        /**
+         * Keeps this cache coherent with caches in other processes: every
+         * put is broadcast as an invalidation, and remote invalidations
+         * drop the local copy
+         */
+        public Builder<K, V> invalidationChannel(InvalidationChannel<K> invalidationChannel) {
+            this.invalidationChannel = invalidationChannel;
+            return this;
+        }
+        
+        /**
+         * Evicts proactively once old-gen occupancy after a GC crosses the
+         * threshold, shedding entries until it is expected to reach the target
+         * (both fractions of the pool's maximum size)
+         */
+        public Builder<K, V> evictOnHeapPressure(double threshold, double target) {
+            if (threshold <= 0 || threshold >= 1 || target <= 0 || target >= threshold) {
+                throw new IllegalArgumentException("require 0 < target < threshold < 1");
+            }
+            this.pressureThreshold = threshold;
+            this.pressureTarget = target;
+            return this;
+        }
+        
+        public CacheConfig<K, V> build() {
+            return new CacheConfig<>(this);
+        }
+    }
+}
@@ -1,12 +1,32 @@
 /**
- * Wrapper class for cache entries with metadata
+ * Wrapper class for cache entries with metadata.
+ *
+ * Access metadata is updated with opaque VarHandle writes: concurrent
+ * readers may lose an access count increment, but never see a torn value
+ * and never pay for a lock or a volatile fence on the hit path.
  */
 public class CacheEntry<V> {
+    private static final VarHandle LAST_ACCESS_TIME;
+    private static final VarHandle ACCESS_COUNT;
+    
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            LAST_ACCESS_TIME = lookup.findVarHandle(CacheEntry.class, "lastAccessTime", long.class);
+            ACCESS_COUNT = lookup.findVarHandle(CacheEntry.class, "accessCount", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+    
     private final V value;
     private final long creationTime;
     private final long expirationTime;
     private long lastAccessTime;
     private int accessCount;
+    private TimerWheel.Node<?> timerNode;
+    private int weight = 1;
+    private long version;
     
     public CacheEntry(V value, long ttlMillis) {
         this.value = value;
@@ -16,21 +36,84 @@ public class CacheEntry<V> {
         this.accessCount = 0;
     }
     
+    /**
+     * Restores an entry with an absolute expiration time, e.g. from a lower tier
+     */
+    public CacheEntry(V value, long creationTime, long expirationTime) {
+        this.value = value;
+        this.creationTime = creationTime;
+        this.expirationTime = expirationTime;
+        this.lastAccessTime = creationTime;
+        this.accessCount = 0;
+    }
+    
     public V getValue() {
-        this.lastAccessTime = System.currentTimeMillis();
-        this.accessCount++;
+        recordAccess(System.currentTimeMillis());
+        return value;
+    }
+    
+    /**
+     * Records an access at the given time; lossy under contention
+     */
+    public void recordAccess(long now) {
+        // Skip the store when a coarse clock hasn't moved, to avoid dirtying the line
+        if ((long) LAST_ACCESS_TIME.getOpaque(this) != now) {
+            LAST_ACCESS_TIME.setOpaque(this, now);
+        }
+        ACCESS_COUNT.setOpaque(this, (int) ACCESS_COUNT.getOpaque(this) + 1);
+    }
+    
+    /**
+     * Returns the value without counting it as an access
+     */
+    public V peekValue() {
         return value;
     }
     
     public boolean isExpired() {
-        return System.currentTimeMillis() > expirationTime;
+        return isExpired(System.currentTimeMillis());
+    }
+    
+    public boolean isExpired(long now) {
+        return now > expirationTime;
+    }
+    
+    public long getExpirationTime() {
+        return expirationTime;
+    }
+    
+    public TimerWheel.Node<?> getTimerNode() {
+        return timerNode;
+    }
+    
+    public void setTimerNode(TimerWheel.Node<?> timerNode) {
+        this.timerNode = timerNode;
+    }
+    
+    public int getWeight() {
+        return weight;
+    }
+    
+    public void setWeight(int weight) {
+        this.weight = weight;
+    }
+    
+    /**
+     * Lamport version of the write that created this entry, 0 if not replicated
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(long version) {
+        this.version = version;
     }
     
     public long getLastAccessTime() {
-        return lastAccessTime;
+        return (long) LAST_ACCESS_TIME.getOpaque(this);
     }
     
     public int getAccessCount() {
-        return accessCount;
+        return (int) ACCESS_COUNT.getOpaque(this);
     }
 } 
\ No newline at end of file
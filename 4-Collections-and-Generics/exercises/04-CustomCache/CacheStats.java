@@ -2,22 +2,59 @@
  * Statistics tracking for cache operations
  */
 public class CacheStats {
+    public enum Tier { HEAP, MAPPED }
+    public enum EvictionCause { SIZE, WEIGHT, EXPIRED, PRESSURE, INVALIDATED }
+    
     private final AtomicLong hits;
     private final AtomicLong misses;
     private final AtomicLong puts;
     private final AtomicLong evictions;
+    private final AtomicLongArray tierHits;
+    private final AtomicLongArray tierMisses;
+    private final AtomicLongArray evictionsByCause;
+    private final Map<String, Double> candidateHitRates;
+    private final AtomicLong policySwitches;
+    private volatile String activePolicy;
     
     public CacheStats() {
         this.hits = new AtomicLong();
         this.misses = new AtomicLong();
         this.puts = new AtomicLong();
         this.evictions = new AtomicLong();
+        this.tierHits = new AtomicLongArray(Tier.values().length);
+        this.tierMisses = new AtomicLongArray(Tier.values().length);
+        this.evictionsByCause = new AtomicLongArray(EvictionCause.values().length);
+        this.candidateHitRates = new ConcurrentSkipListMap<>();
+        this.policySwitches = new AtomicLong();
     }
     
     public void recordHit() { hits.incrementAndGet(); }
     public void recordMiss() { misses.incrementAndGet(); }
     public void recordPut() { puts.incrementAndGet(); }
-    public void recordEviction() { evictions.incrementAndGet(); }
+    public void recordEviction(EvictionCause cause) {
+        evictions.incrementAndGet();
+        evictionsByCause.incrementAndGet(cause.ordinal());
+    }
+    public void recordTierHit(Tier tier) { tierHits.incrementAndGet(tier.ordinal()); }
+    public void recordTierMiss(Tier tier) { tierMisses.incrementAndGet(tier.ordinal()); }
+    public void recordCandidateHitRate(String policy, double hitRate) { candidateHitRates.put(policy, hitRate); }
+    public void recordActivePolicy(String policy) { activePolicy = policy; }
+    public void recordPolicySwitch(String policy) {
+        policySwitches.incrementAndGet();
+        activePolicy = policy;
+    }
+    
+    public long getTierHits(Tier tier) { return tierHits.get(tier.ordinal()); }
+    public long getTierMisses(Tier tier) { return tierMisses.get(tier.ordinal()); }
+    public long getEvictions(EvictionCause cause) { return evictionsByCause.get(cause.ordinal()); }
+    
+    /**
+     * Simulated hit rate of each candidate policy over the last sampling
+     * epoch; empty unless the cache uses an adaptive policy
+     */
+    public Map<String, Double> getCandidateHitRates() { return new TreeMap<>(candidateHitRates); }
+    public long getPolicySwitches() { return policySwitches.get(); }
+    public String getActivePolicy() { return activePolicy; }
     
     public double getHitRate() {
         long totalRequests = hits.get() + misses.get();
@@ -26,9 +63,25 @@ public class CacheStats {
     
     @Override
     public String toString() {
+        String adaptive = activePolicy == null ? "" : String.format(
+            ", policy=%s, switches=%d, candidates=%s",
+            activePolicy, policySwitches.get(), formatRates());
         return String.format(
-            "CacheStats{hits=%d, misses=%d, puts=%d, evictions=%d, hitRate=%.2f}",
-            hits.get(), misses.get(), puts.get(), evictions.get(), getHitRate()
+            "CacheStats{hits=%d, misses=%d, puts=%d, evictions=%d, hitRate=%.2f, " +
+            "heap=%d/%d, mapped=%d/%d, " +
+            "evictedBy{size=%d, weight=%d, expired=%d, pressure=%d, invalidated=%d}%s}",
+            hits.get(), misses.get(), puts.get(), evictions.get(), getHitRate(),
+            getTierHits(Tier.HEAP), getTierMisses(Tier.HEAP),
+            getTierHits(Tier.MAPPED), getTierMisses(Tier.MAPPED),
+            getEvictions(EvictionCause.SIZE), getEvictions(EvictionCause.WEIGHT),
+            getEvictions(EvictionCause.EXPIRED), getEvictions(EvictionCause.PRESSURE),
+            getEvictions(EvictionCause.INVALIDATED), adaptive
         );
     }
+    
+    private String formatRates() {
+        StringJoiner joiner = new StringJoiner(", ", "{", "}");
+        candidateHitRates.forEach((policy, rate) -> joiner.add(String.format("%s=%.3f", policy, rate)));
+        return joiner.toString();
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,16 @@
+/**
+ * Propagates cache writes to a backing store
+ */
+@FunctionalInterface
+public interface CacheWriter<K, V> {
+    void write(K key, V value) throws Exception;
+    
+    /**
+     * Writes a batch of entries; override to use the store's bulk API
+     */
+    default void writeAll(Map<K, V> entries) throws Exception {
+        for (Map.Entry<K, V> entry : entries.entrySet()) {
+            write(entry.getKey(), entry.getValue());
+        }
+    }
+}
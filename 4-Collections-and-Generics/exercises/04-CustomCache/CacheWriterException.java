@@ -0,0 +1,17 @@
+/**
+ * Thrown when a put cannot be propagated to the backing store
+ */
+public class CacheWriterException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    
+    private final Object key;
+    
+    public CacheWriterException(Object key, Throwable cause) {
+        super("Failed to write key: " + key, cause);
+        this.key = key;
+    }
+    
+    public Object getKey() {
+        return key;
+    }
+}
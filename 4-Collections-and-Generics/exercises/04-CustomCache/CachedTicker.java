@@ -0,0 +1,32 @@
+/**
+ * Coarse ticker whose time is refreshed by a background thread, so reads
+ * are a single volatile load instead of a clock call. Timestamps lag real
+ * time by up to the configured resolution.
+ */
+public class CachedTicker implements Ticker, AutoCloseable {
+    private final ScheduledExecutorService updater;
+    private volatile long now;
+    
+    public CachedTicker(long resolutionMillis) {
+        this.now = System.currentTimeMillis();
+        this.updater = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cached-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        updater.scheduleAtFixedRate(
+            () -> now = System.currentTimeMillis(),
+            resolutionMillis, resolutionMillis, TimeUnit.MILLISECONDS
+        );
+    }
+    
+    @Override
+    public long read() {
+        return now;
+    }
+    
+    @Override
+    public void close() {
+        updater.shutdown();
+    }
+}
@@ -5,70 +5,345 @@ public class CustomCache<K, V> {
     private final ConcurrentHashMap<K, CacheEntry<V>> cache;
     private final EvictionPolicy<K, V> evictionPolicy;
     private final int maxSize;
+    private final long maxWeight;
+    private final Weigher<K, V> weigher;
+    private final AtomicLong totalWeight;
     private final CacheStats stats;
+    private final TimerWheel<K> timerWheel;
+    private final ReentrantLock expirationLock;
+    private final MappedTier<K, V> secondTier;
+    private final Ticker ticker;
+    private final CacheWriter<K, V> writer;
+    private final InvalidationChannel<K> invalidationChannel;
     private final ScheduledExecutorService cleanup;
+    private final HeapPressureMonitor pressureMonitor;
     
     public CustomCache(int maxSize, EvictionPolicy<K, V> evictionPolicy) {
+        this(maxSize, evictionPolicy, null);
+    }
+    
+    /**
+     * Creates a cache that spills evicted entries into a memory-mapped tier
+     * and promotes them back to the heap on their next hit
+     */
+    public CustomCache(int maxSize, EvictionPolicy<K, V> evictionPolicy, MappedTier<K, V> secondTier) {
+        this(maxSize, evictionPolicy, secondTier, Ticker.system());
+    }
+    
+    /**
+     * Creates a cache that reads time from the given ticker, e.g. a CachedTicker
+     */
+    public CustomCache(int maxSize, EvictionPolicy<K, V> evictionPolicy,
+                       MappedTier<K, V> secondTier, Ticker ticker) {
+        this(evictionPolicy, new CacheConfig.Builder<K, V>()
+            .maxSize(maxSize)
+            .secondTier(secondTier)
+            .ticker(ticker)
+            .build());
+    }
+    
+    public CustomCache(EvictionPolicy<K, V> evictionPolicy, CacheConfig<K, V> config) {
         this.cache = new ConcurrentHashMap<>();
         this.evictionPolicy = evictionPolicy;
-        this.maxSize = maxSize;
+        this.maxSize = config.getMaxSize();
+        this.maxWeight = config.getMaxWeight();
+        this.weigher = config.getWeigher();
+        this.totalWeight = new AtomicLong();
+        this.secondTier = config.getSecondTier();
+        this.ticker = config.getTicker();
+        this.writer = config.getWriter();
+        this.invalidationChannel = config.getInvalidationChannel();
         this.stats = new CacheStats();
+        evictionPolicy.bindStats(stats);
+        this.timerWheel = new TimerWheel<>(ticker.read());
+        this.expirationLock = new ReentrantLock();
         this.cleanup = Executors.newSingleThreadScheduledExecutor();
         
-        // Schedule cleanup task
+        // Advance the timer wheel; work is proportional to what expired
         cleanup.scheduleAtFixedRate(
             this::removeExpiredEntries,
-            1, 1, TimeUnit.MINUTES
+            1, 1, TimeUnit.SECONDS
         );
+        
+        if (config.isPressureEvictionEnabled()) {
+            double target = config.getPressureTarget();
+            this.pressureMonitor = new HeapPressureMonitor(config.getPressureThreshold(),
+                occupancy -> cleanup.execute(() -> shedForPressure(occupancy, target)));
+        } else {
+            this.pressureMonitor = null;
+        }
+        
+        if (invalidationChannel != null) {
+            invalidationChannel.setListener(this::invalidateFromPeer);
+        }
     }
     
+    /**
+     * Adds an entry, first handing it to the configured CacheWriter.
+     * If the writer fails, the cache is left unchanged and a
+     * CacheWriterException is thrown.
+     */
     public void put(K key, V value, long ttlMillis) {
-        if (cache.size() >= maxSize) {
-            evict();
+        if (writer != null) {
+            write(key, value);
         }
-        
-        CacheEntry<V> entry = new CacheEntry<>(value, ttlMillis);
-        cache.put(key, entry);
-        evictionPolicy.onAdd(key, value);
+        long now = ticker.read();
+        CacheEntry<V> entry = new CacheEntry<>(value, now, ttlMillis > 0 ? now + ttlMillis : Long.MAX_VALUE);
+        if (invalidationChannel != null) {
+            entry.setVersion(invalidationChannel.publish(key));
+        }
+        if (secondTier != null) {
+            // An older value demoted to the second tier must not outlive this one
+            secondTier.remove(key, now);
+        }
+        insert(key, entry, false);
         stats.recordPut();
     }
     
+    /**
+     * Drops the key locally and, if replicating, in every peer cache
+     */
+    public void invalidate(K key) {
+        CacheEntry<V> entry = cache.remove(key);
+        if (entry != null) {
+            afterRemoval(key, entry, CacheStats.EvictionCause.INVALIDATED);
+        }
+        if (secondTier != null) {
+            secondTier.remove(key, ticker.read());
+        }
+        if (invalidationChannel != null) {
+            invalidationChannel.publish(key);
+        }
+    }
+    
+    private void invalidateFromPeer(K key, long version) {
+        CacheEntry<V> entry = cache.get(key);
+        // A local write newer than the remote one wins
+        if (entry != null && entry.getVersion() < version && cache.remove(key, entry)) {
+            afterRemoval(key, entry, CacheStats.EvictionCause.INVALIDATED);
+        }
+        if (secondTier != null) {
+            secondTier.remove(key, ticker.read());
+        }
+    }
+    
+    private void write(K key, V value) {
+        try {
+            writer.write(key, value);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CacheWriterException(key, e);
+        } catch (Exception e) {
+            throw new CacheWriterException(key, e);
+        }
+    }
+    
     public Optional<V> get(K key) {
+        return Optional.ofNullable(getIfPresent(key));
+    }
+    
+    /**
+     * Hot-path lookup: returns the value or null, without allocating on a heap hit
+     */
+    public V getIfPresent(K key) {
         CacheEntry<V> entry = cache.get(key);
         
         if (entry == null) {
+            stats.recordTierMiss(CacheStats.Tier.HEAP);
+            return getFromSecondTier(key);
+        }
+        
+        long now = ticker.read();
+        if (entry.isExpired(now)) {
+            if (cache.remove(key, entry)) {
+                afterRemoval(key, entry, CacheStats.EvictionCause.EXPIRED);
+            }
+            stats.recordTierMiss(CacheStats.Tier.HEAP);
             stats.recordMiss();
-            return Optional.empty();
+            return null;
         }
         
-        if (entry.isExpired()) {
-            cache.remove(key);
+        V value = entry.peekValue();
+        entry.recordAccess(now);
+        evictionPolicy.onAccess(key, value);
+        stats.recordTierHit(CacheStats.Tier.HEAP);
+        stats.recordHit();
+        return value;
+    }
+    
+    private V getFromSecondTier(K key) {
+        CacheEntry<V> promoted = secondTier == null
+            ? null : secondTier.remove(key, ticker.read());
+        if (promoted == null) {
+            if (secondTier != null) {
+                stats.recordTierMiss(CacheStats.Tier.MAPPED);
+            }
             stats.recordMiss();
-            return Optional.empty();
+            return null;
         }
         
-        evictionPolicy.onAccess(key, entry.getValue());
+        // A put that ran since the promoted value left the tier is newer; it wins
+        CacheEntry<V> current = insert(key, promoted, true);
+        stats.recordTierHit(CacheStats.Tier.MAPPED);
         stats.recordHit();
-        return Optional.of(entry.getValue());
+        return current.peekValue();
     }
     
-    private void evict() {
+    /**
+     * Maps the key to the entry, or with onlyIfAbsent leaves an entry
+     * already on the heap in place
+     *
+     * @return the entry the key maps to afterwards
+     */
+    private CacheEntry<V> insert(K key, CacheEntry<V> entry, boolean onlyIfAbsent) {
+        int weight = weigher.weigh(key, entry.peekValue());
+        entry.setWeight(weight);
+        makeRoom(key, weight);
+        
+        CacheEntry<V> previous;
+        if (onlyIfAbsent) {
+            previous = cache.putIfAbsent(key, entry);
+            if (previous != null) {
+                return previous;
+            }
+        } else {
+            previous = cache.put(key, entry);
+        }
+        totalWeight.addAndGet(weight);
+        if (previous != null) {
+            totalWeight.addAndGet(-previous.getWeight());
+        }
+        if (entry.getExpirationTime() != Long.MAX_VALUE || previous != null) {
+            scheduleExpiration(key, entry, previous);
+        }
+        evictionPolicy.onAdd(key, entry.peekValue());
+        return entry;
+    }
+    
+    /**
+     * Evicts until the key's new entry fits. Replacing an entry only adds
+     * the difference in weight and no new entry to the count.
+     */
+    private void makeRoom(K key, int incomingWeight) {
+        while (!cache.isEmpty()) {
+            // Re-read each time: the key's own entry may be the one evicted
+            CacheEntry<V> existing = cache.get(key);
+            int added = existing == null ? 1 : 0;
+            long weightChange = existing == null ? incomingWeight : incomingWeight - existing.getWeight();
+            CacheStats.EvictionCause cause;
+            if (cache.size() + added > maxSize) {
+                cause = CacheStats.EvictionCause.SIZE;
+            } else if (totalWeight.get() + weightChange > maxWeight) {
+                cause = CacheStats.EvictionCause.WEIGHT;
+            } else {
+                return;
+            }
+            if (!evict(cause)) {
+                return;
+            }
+        }
+    }
+    
+    private boolean evict(CacheStats.EvictionCause cause) {
         K keyToEvict = evictionPolicy.getEvictionCandidate();
-        if (keyToEvict != null) {
-            cache.remove(keyToEvict);
-            stats.recordEviction();
+        if (keyToEvict == null) {
+            return false;
+        }
+        CacheEntry<V> removed = cache.remove(keyToEvict);
+        if (removed == null) {
+            return false; // policy is behind the map; retry on the next write
+        }
+        afterRemoval(keyToEvict, removed, cause);
+        return true;
+    }
+    
+    private void afterRemoval(K key, CacheEntry<V> entry, CacheStats.EvictionCause cause) {
+        descheduleExpiration(entry);
+        totalWeight.addAndGet(-entry.getWeight());
+        if (cause == CacheStats.EvictionCause.EXPIRED
+                || cause == CacheStats.EvictionCause.INVALIDATED) {
+            evictionPolicy.onRemove(key);
+        } else if (secondTier != null && !entry.isExpired(ticker.read())) {
+            secondTier.put(key, entry.peekValue(), entry.getExpirationTime());
+        }
+        stats.recordEviction(cause);
+    }
+    
+    /**
+     * Sheds the share of entries that should bring old-gen occupancy down to the target
+     */
+    private void shedForPressure(double occupancy, double target) {
+        if (occupancy <= target) {
+            return;
+        }
+        long toEvict = (long) Math.ceil(cache.size() * (occupancy - target) / occupancy);
+        for (long i = 0; i < toEvict; i++) {
+            if (!evict(CacheStats.EvictionCause.PRESSURE)) {
+                break;
+            }
+        }
+    }
+    
+    private void scheduleExpiration(K key, CacheEntry<V> entry, CacheEntry<V> previous) {
+        expirationLock.lock();
+        try {
+            if (previous != null) {
+                timerWheel.deschedule(previous.getTimerNode());
+            }
+            if (entry.getExpirationTime() != Long.MAX_VALUE) {
+                entry.setTimerNode(timerWheel.schedule(key, entry.getExpirationTime()));
+            }
+            // Amortize expiry into the write path
+            timerWheel.advance(ticker.read(), this::expire);
+        } finally {
+            expirationLock.unlock();
+        }
+    }
+    
+    private void descheduleExpiration(CacheEntry<V> entry) {
+        if (entry.getTimerNode() == null) {
+            return;
+        }
+        expirationLock.lock();
+        try {
+            timerWheel.deschedule(entry.getTimerNode());
+        } finally {
+            expirationLock.unlock();
+        }
+    }
+    
+    private void expire(K key) {
+        // The key may have been overwritten since it was scheduled
+        CacheEntry<V> entry = cache.get(key);
+        if (entry != null && entry.isExpired(ticker.read()) && cache.remove(key, entry)) {
+            afterRemoval(key, entry, CacheStats.EvictionCause.EXPIRED);
         }
     }
     
     private void removeExpiredEntries() {
-        cache.entrySet().removeIf(entry -> entry.getValue().isExpired());
+        expirationLock.lock();
+        try {
+            timerWheel.advance(ticker.read(), this::expire);
+        } finally {
+            expirationLock.unlock();
+        }
     }
     
     public CacheStats getStats() {
         return stats;
     }
     
+    public long getTotalWeight() {
+        return totalWeight.get();
+    }
+    
     public void shutdown() {
+        if (pressureMonitor != null) {
+            pressureMonitor.close();
+        }
         cleanup.shutdown();
+        if (secondTier != null) {
+            secondTier.flush();
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,107 @@
+/**
+ * Test cases for CustomCache
+ */
+public class CustomCacheTest {
+    private Path tierFile;
+    private MappedTier<String, String> tier;
+    private long now;
+    private CustomCache<String, String> cache;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        tierFile = Files.createTempFile("custom-cache-test", ".tier");
+        tier = new MappedTier<>(tierFile, 1 << 20, 64);
+        now = 1_000;
+        cache = new CustomCache<>(1, new LRUEvictionPolicy<>(), tier, () -> now);
+    }
+    
+    @AfterEach
+    void tearDown() throws IOException {
+        cache.shutdown();
+        tier.close();
+        Files.deleteIfExists(tierFile);
+    }
+    
+    @Test
+    void testEvictedEntryIsPromotedFromSecondTier() {
+        cache.put("a", "1", 0);
+        cache.put("b", "2", 0); // demotes a
+        
+        assertEquals("1", cache.getIfPresent("a"));
+    }
+    
+    @Test
+    void testOverwriteDropsStaleSecondTierValue() {
+        cache.put("a", "old", 0);
+        cache.put("b", "2", 0); // demotes the old a
+        cache.put("a", "new", 100);
+        
+        now += 200;
+        assertNull(cache.getIfPresent("a")); // the new value expired
+        assertNull(cache.getIfPresent("a")); // and the old one is not promoted
+    }
+    
+    @Test
+    void testPutDuringPromotionIsNotOverwritten() {
+        // Weighing the promoted value is the window between leaving the tier and reaching the heap
+        AtomicBoolean racing = new AtomicBoolean();
+        AtomicReference<CustomCache<String, String>> racy = new AtomicReference<>();
+        racy.set(new CustomCache<>(new LRUEvictionPolicy<>(), new CacheConfig.Builder<String, String>()
+            .maxSize(2)
+            .maxWeight(Long.MAX_VALUE, (key, value) -> {
+                if (value.equals("old") && racing.getAndSet(false)) {
+                    racy.get().put(key, "new", 0);
+                }
+                return 1;
+            })
+            .secondTier(tier)
+            .ticker(() -> now)
+            .build()));
+        try {
+            racy.get().put("a", "old", 0);
+            racy.get().put("b", "2", 0);
+            racy.get().put("c", "3", 0); // demotes the old a
+            
+            racing.set(true);
+            assertEquals("new", racy.get().getIfPresent("a"));
+            assertFalse(racing.get());
+            assertEquals("new", racy.get().getIfPresent("a"));
+        } finally {
+            racy.get().shutdown();
+        }
+    }
+    
+    @Test
+    void testOverwriteOnlyCountsWeightChange() {
+        CustomCache<String, String> weighed = new CustomCache<>(new LRUEvictionPolicy<>(),
+            new CacheConfig.Builder<String, String>()
+                .maxWeight(10, (key, value) -> value.length())
+                .ticker(() -> now)
+                .build());
+        try {
+            weighed.put("a", "aaaaa", 0);
+            weighed.put("b", "bbbbb", 0);
+            weighed.put("a", "AAAAA", 0); // same weight, at the limit
+            assertEquals(0, weighed.getStats().getEvictions(CacheStats.EvictionCause.WEIGHT));
+            assertEquals("bbbbb", weighed.getIfPresent("b"));
+            
+            weighed.put("a", "AAAA", 0); // lighter
+            weighed.put("a", "AAAAAA", 0); // one over: b has to go, not a
+            assertEquals(1, weighed.getStats().getEvictions(CacheStats.EvictionCause.WEIGHT));
+            assertNull(weighed.getIfPresent("b"));
+            assertEquals("AAAAAA", weighed.getIfPresent("a"));
+            assertEquals(6, weighed.getTotalWeight());
+        } finally {
+            weighed.shutdown();
+        }
+    }
+    
+    @Test
+    void testOverwriteInFullCacheEvictsNothing() {
+        cache.put("a", "1", 0);
+        cache.put("a", "2", 0);
+        
+        assertEquals(0, cache.getStats().getEvictions(CacheStats.EvictionCause.SIZE));
+        assertEquals("2", cache.getIfPresent("a"));
+    }
+}
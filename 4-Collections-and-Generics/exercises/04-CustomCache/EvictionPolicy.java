@@ -16,4 +16,16 @@ public interface EvictionPolicy<K, V> {
      * Returns the next key to evict
      */
     K getEvictionCandidate();
+    
+    /**
+     * Called when an entry is removed for a reason other than eviction
+     */
+    default void onRemove(K key) {
+    }
+    
+    /**
+     * Gives the policy the owning cache's statistics to report into
+     */
+    default void bindStats(CacheStats stats) {
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,36 @@
+/**
+ * First In First Out eviction policy implementation. Accesses do not
+ * change the order, so a key is evicted by age alone.
+ */
+public class FIFOEvictionPolicy<K, V> implements EvictionPolicy<K, V> {
+    private final LinkedHashSet<K> insertionOrder;
+    
+    public FIFOEvictionPolicy() {
+        this.insertionOrder = new LinkedHashSet<>();
+    }
+    
+    @Override
+    public void onAccess(K key, V value) {
+        // Access does not affect FIFO order
+    }
+    
+    @Override
+    public synchronized void onAdd(K key, V value) {
+        insertionOrder.add(key); // an update keeps the original position
+    }
+    
+    @Override
+    public synchronized void onRemove(K key) {
+        insertionOrder.remove(key);
+    }
+    
+    @Override
+    public synchronized K getEvictionCandidate() {
+        if (insertionOrder.isEmpty()) {
+            return null;
+        }
+        K oldest = insertionOrder.iterator().next();
+        insertionOrder.remove(oldest);
+        return oldest;
+    }
+}
@@ -0,0 +1,34 @@
+/**
+ * Reference CacheWriter that appends "key<TAB>value" lines to a local file,
+ * forcing the file to disk once per batch
+ */
+public class FileCacheWriter<K, V> implements CacheWriter<K, V>, Closeable {
+    private final FileChannel channel;
+    
+    public FileCacheWriter(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+    
+    @Override
+    public void write(K key, V value) throws IOException {
+        writeAll(Collections.singletonMap(key, value));
+    }
+    
+    @Override
+    public synchronized void writeAll(Map<K, V> entries) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        entries.forEach((key, value) ->
+            lines.append(key).append('\t').append(value).append('\n'));
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
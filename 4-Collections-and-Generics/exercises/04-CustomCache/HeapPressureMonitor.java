@@ -0,0 +1,65 @@
+/**
+ * Watches the old-generation heap pool and reports when its occupancy after
+ * a collection crosses a threshold.
+ *
+ * Uses the pool's collection usage threshold, so it reacts to live data
+ * that survived a GC rather than to garbage. The threshold is a JVM-wide
+ * setting on the pool; the last monitor created wins.
+ */
+public class HeapPressureMonitor implements AutoCloseable {
+    private final MemoryPoolMXBean oldGen;
+    private final NotificationEmitter emitter;
+    private final NotificationListener listener;
+    
+    /**
+     * @param onPressure receives the pool's current occupancy as a fraction of its max
+     */
+    public HeapPressureMonitor(double threshold, DoubleConsumer onPressure) {
+        this.oldGen = findOldGen();
+        this.emitter = (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+        this.listener = (notification, handback) -> {
+            if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED
+                    .equals(notification.getType())) {
+                onPressure.accept(getOccupancy());
+            }
+        };
+        
+        if (oldGen != null) {
+            long max = oldGen.getUsage().getMax();
+            if (max > 0) {
+                oldGen.setCollectionUsageThreshold((long) (max * threshold));
+                emitter.addNotificationListener(listener, null, null);
+            }
+        }
+    }
+    
+    public double getOccupancy() {
+        if (oldGen == null) {
+            return 0.0;
+        }
+        MemoryUsage usage = oldGen.getUsage();
+        return usage.getMax() <= 0 ? 0.0 : (double) usage.getUsed() / usage.getMax();
+    }
+    
+    @Override
+    public void close() {
+        try {
+            emitter.removeNotificationListener(listener);
+        } catch (ListenerNotFoundException e) {
+            // never registered; nothing to undo
+        }
+    }
+    
+    private static MemoryPoolMXBean findOldGen() {
+        // The tenured pool is the heap pool that supports collection thresholds
+        // and is not the eden or survivor space
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            String name = pool.getName();
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported()
+                    && !name.contains("Eden") && !name.contains("Survivor")) {
+                return pool;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Measures the cost of a cache hit before and after the allocation-free
+ * hit path. "before" looks keys up through get(), which wraps every hit in
+ * an Optional, with a cache reading System.currentTimeMillis on every
+ * operation. "after" uses getIfPresent with a CachedTicker, so a hit reads
+ * the clock as one volatile load and only touches the entry's access
+ * metadata through opaque VarHandle writes. Both caches are warmed up and
+ * every lookup hits. Median rates and allocated bytes per lookup, taken
+ * from the thread's allocation counter, are compared; once compiled, the
+ * JIT may scalar-replace the Optional, so "before" can allocate nothing
+ * too, and the gap is then the clock read.
+ *
+ * Usage: java HitPathBenchmark [keys] [lookups] [rounds]
+ */
+public class HitPathBenchmark {
+    public static void main(String[] args) {
+        int keys = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        
+        try (CachedTicker cachedTicker = new CachedTicker(1)) {
+            Integer[] boxedKeys = new Integer[keys]; // boxed once, so lookups allocate nothing of their own
+            for (int i = 0; i < keys; i++) {
+                boxedKeys[i] = i;
+            }
+            CustomCache<Integer, Integer> before = filled(boxedKeys, Ticker.system());
+            CustomCache<Integer, Integer> after = filled(boxedKeys, cachedTicker);
+            run(before, boxedKeys, lookups, false); // warm-up
+            run(after, boxedKeys, lookups, true);
+            
+            double[] beforeRates = new double[rounds];
+            double[] afterRates = new double[rounds];
+            double beforeBytes = 0;
+            double afterBytes = 0;
+            for (int round = 0; round < rounds; round++) {
+                long[] b = run(before, boxedKeys, lookups, false);
+                long[] a = run(after, boxedKeys, lookups, true);
+                beforeRates[round] = lookups * 1e9 / b[0];
+                afterRates[round] = lookups * 1e9 / a[0];
+                beforeBytes += (double) b[1] / lookups;
+                afterBytes += (double) a[1] / lookups;
+                System.out.printf("round %d: before=%.0f gets/s (%.1f B/get) after=%.0f gets/s (%.1f B/get)%n",
+                    round + 1, beforeRates[round], (double) b[1] / lookups,
+                    afterRates[round], (double) a[1] / lookups);
+            }
+            Arrays.sort(beforeRates);
+            Arrays.sort(afterRates);
+            System.out.printf("median: before=%.0f gets/s after=%.0f gets/s (%.1fx); mean: before=%.1f B/get after=%.1f B/get%n",
+                beforeRates[rounds / 2], afterRates[rounds / 2], afterRates[rounds / 2] / beforeRates[rounds / 2],
+                beforeBytes / rounds, afterBytes / rounds);
+            before.shutdown();
+            after.shutdown();
+        }
+    }
+    
+    private static CustomCache<Integer, Integer> filled(Integer[] keys, Ticker ticker) {
+        CustomCache<Integer, Integer> cache = new CustomCache<>(keys.length, new LRUEvictionPolicy<>(), null, ticker);
+        for (Integer key : keys) {
+            cache.put(key, key, 0);
+        }
+        return cache;
+    }
+    
+    /**
+     * @return elapsed nanoseconds and bytes allocated by this thread
+     */
+    private static long[] run(CustomCache<Integer, Integer> cache, Integer[] keys, int lookups, boolean ifPresent) {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long sum = 0;
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            Integer key = keys[i % keys.length];
+            if (ifPresent) {
+                sum += cache.getIfPresent(key);
+            } else {
+                sum += cache.get(key).get();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        if (sum < 0) {
+            throw new IllegalStateException("Unexpected sum: " + sum);
+        }
+        return new long[] { elapsed, allocated };
+    }
+}
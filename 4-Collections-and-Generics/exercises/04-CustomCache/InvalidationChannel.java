@@ -0,0 +1,317 @@
+/**
+ * Broadcasts key invalidations between caches in different processes on
+ * the same host, over loopback TCP or Unix domain sockets.
+ *
+ * Invalidations are stamped with a Lamport clock and coalesced per key
+ * until the next flush, so a burst of writes to a few keys goes out as one
+ * frame per peer. A receiver ignores an invalidation older than its own
+ * write of the key. The low 16 bits of a version hold the node id, so as
+ * long as every node on the host has its own id, no two nodes issue the
+ * same version and concurrent writes resolve the same way everywhere. The
+ * id is configured, or taken from the TCP port the node listens on.
+ * Delivery is best effort: a peer that is down misses the batch and falls
+ * back on entry TTLs.
+ *
+ * Frame layout: [int length][long nodeId][int count] then, per key,
+ * [long version][int keyLength][key bytes].
+ */
+public class InvalidationChannel<K> implements AutoCloseable {
+    private static final int HEADER_BYTES = 16;
+    private static final int MAX_FRAME_BYTES = 16 << 20;
+    private static final int NODE_BITS = 16;
+    
+    private final long nodeId;
+    private final AtomicLong clock;
+    private final Function<K, byte[]> keyEncoder;
+    private final Function<byte[], K> keyDecoder;
+    private final int maxBatchSize;
+    private final List<SocketAddress> peers;
+    private final Map<SocketAddress, SocketChannel> connections;
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Thread receiver;
+    private final ScheduledExecutorService flusher;
+    private final ReentrantLock pendingLock;
+    private final AtomicLong sentFrames;
+    private final AtomicLong receivedInvalidations;
+    private Map<K, Long> pending;
+    private volatile BiConsumer<K, Long> listener;
+    private volatile boolean running;
+    
+    /**
+     * Uses the TCP port of localAddress as the node id; ports are unique on
+     * a host. A Unix domain socket has no port, so give it an id with the
+     * other constructor.
+     */
+    public InvalidationChannel(SocketAddress localAddress, List<SocketAddress> peers,
+                               Function<K, byte[]> keyEncoder, Function<byte[], K> keyDecoder,
+                               int maxBatchSize, long flushIntervalMillis) throws IOException {
+        this(portOf(localAddress), localAddress, peers, keyEncoder, keyDecoder, maxBatchSize, flushIntervalMillis);
+    }
+    
+    /**
+     * @param nodeId id between 0 and 65535, distinct from every peer's
+     */
+    public InvalidationChannel(int nodeId, SocketAddress localAddress, List<SocketAddress> peers,
+                               Function<K, byte[]> keyEncoder, Function<byte[], K> keyDecoder,
+                               int maxBatchSize, long flushIntervalMillis) throws IOException {
+        if (nodeId < 0 || nodeId >= 1 << NODE_BITS) {
+            throw new IllegalArgumentException("Node id must be between 0 and 65535: " + nodeId);
+        }
+        this.nodeId = nodeId;
+        this.clock = new AtomicLong();
+        this.keyEncoder = keyEncoder;
+        this.keyDecoder = keyDecoder;
+        this.maxBatchSize = maxBatchSize;
+        this.peers = new ArrayList<>(peers);
+        this.connections = new HashMap<>();
+        this.pendingLock = new ReentrantLock();
+        this.pending = new LinkedHashMap<>();
+        this.sentFrames = new AtomicLong();
+        this.receivedInvalidations = new AtomicLong();
+        this.listener = (key, version) -> { };
+        this.running = true;
+        
+        if (localAddress instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) localAddress).getPath());
+        }
+        this.server = localAddress instanceof UnixDomainSocketAddress
+            ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+            : ServerSocketChannel.open();
+        server.bind(localAddress);
+        server.configureBlocking(false);
+        this.selector = Selector.open();
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        
+        this.receiver = new Thread(this::runReceiver, "invalidation-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+        
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "invalidation-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush,
+            flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Sets the callback run on the receiver thread for each remote invalidation
+     */
+    public void setListener(BiConsumer<K, Long> listener) {
+        this.listener = listener;
+    }
+    
+    /**
+     * Queues an invalidation for the key and returns its version
+     */
+    public long publish(K key) {
+        long version = clock.updateAndGet(this::tick);
+        boolean flushNow;
+        pendingLock.lock();
+        try {
+            pending.put(key, version);
+            flushNow = pending.size() >= maxBatchSize;
+        } finally {
+            pendingLock.unlock();
+        }
+        if (flushNow) {
+            flusher.execute(this::flush);
+        }
+        return version;
+    }
+    
+    private static int portOf(SocketAddress address) {
+        if (!(address instanceof InetSocketAddress) || ((InetSocketAddress) address).getPort() == 0) {
+            throw new IllegalArgumentException("No fixed TCP port to use as node id: " + address);
+        }
+        return ((InetSocketAddress) address).getPort();
+    }
+    
+    private long tick(long version) {
+        return (((version >>> NODE_BITS) + 1) << NODE_BITS) | nodeId;
+    }
+    
+    public long getSentFrames() {
+        return sentFrames.get();
+    }
+    
+    public long getReceivedInvalidations() {
+        return receivedInvalidations.get();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        running = false;
+        flusher.shutdown();
+        selector.wakeup();
+        try {
+            receiver.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (connections) {
+            for (SocketChannel channel : connections.values()) {
+                channel.close();
+            }
+        }
+        server.close();
+    }
+    
+    private void flush() {
+        Map<K, Long> batch;
+        pendingLock.lock();
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        } finally {
+            pendingLock.unlock();
+        }
+        
+        ByteBuffer frame = encode(batch);
+        synchronized (connections) {
+            for (SocketAddress peer : peers) {
+                send(peer, frame.duplicate());
+            }
+        }
+    }
+    
+    private void send(SocketAddress peer, ByteBuffer frame) {
+        try {
+            SocketChannel channel = connections.get(peer);
+            if (channel == null) {
+                channel = SocketChannel.open(peer);
+                connections.put(peer, channel);
+            }
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+            sentFrames.incrementAndGet();
+        } catch (IOException e) {
+            // Peer is down; drop the connection and reconnect on the next flush
+            SocketChannel broken = connections.remove(peer);
+            if (broken != null) {
+                try {
+                    broken.close();
+                } catch (IOException ignored) {
+                    // already failing
+                }
+            }
+        }
+    }
+    
+    private ByteBuffer encode(Map<K, Long> batch) {
+        List<byte[]> keys = new ArrayList<>(batch.size());
+        int length = HEADER_BYTES;
+        for (K key : batch.keySet()) {
+            byte[] bytes = keyEncoder.apply(key);
+            keys.add(bytes);
+            length += 12 + bytes.length;
+        }
+        ByteBuffer frame = ByteBuffer.allocate(length);
+        frame.putInt(length).putLong(nodeId).putInt(batch.size());
+        int i = 0;
+        for (Long version : batch.values()) {
+            byte[] bytes = keys.get(i++);
+            frame.putLong(version).putInt(bytes.length).put(bytes);
+        }
+        frame.flip();
+        return frame;
+    }
+    
+    private void runReceiver() {
+        while (running) {
+            try {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        SocketChannel channel = server.accept();
+                        if (channel != null) {
+                            channel.configureBlocking(false);
+                            channel.register(selector, SelectionKey.OP_READ, ByteBuffer.allocate(64 << 10));
+                        }
+                    } else if (key.isReadable()) {
+                        read(key);
+                    }
+                }
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Invalidation receiver error: " + e.getMessage());
+                }
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+            // shutting down
+        }
+    }
+    
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        ByteBuffer buffer = (ByteBuffer) key.attachment();
+        int read;
+        try {
+            read = channel.read(buffer);
+        } catch (IOException e) {
+            read = -1;
+        }
+        if (read < 0) {
+            key.cancel();
+            channel.close();
+            return;
+        }
+        
+        buffer.flip();
+        while (buffer.remaining() >= 4) {
+            int length = buffer.getInt(buffer.position());
+            if (length < HEADER_BYTES || length > MAX_FRAME_BYTES) {
+                key.cancel();
+                channel.close();
+                return;
+            }
+            if (buffer.remaining() < length) {
+                break;
+            }
+            ByteBuffer frame = buffer.slice();
+            frame.limit(length);
+            buffer.position(buffer.position() + length);
+            decode(frame);
+        }
+        buffer.compact();
+        
+        // Grow for a frame larger than the buffer
+        if (!buffer.hasRemaining()) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.min(buffer.capacity() * 2, MAX_FRAME_BYTES));
+            buffer.flip();
+            larger.put(buffer);
+            key.attach(larger);
+        }
+    }
+    
+    private void decode(ByteBuffer frame) {
+        frame.getInt();
+        if (frame.getLong() == nodeId) {
+            return; // our own broadcast looped back
+        }
+        int count = frame.getInt();
+        for (int i = 0; i < count; i++) {
+            long version = frame.getLong();
+            byte[] bytes = new byte[frame.getInt()];
+            frame.get(bytes);
+            clock.accumulateAndGet(version, (current, remote) -> tick(Math.max(current, remote)));
+            receivedInvalidations.incrementAndGet();
+            listener.accept(keyDecoder.apply(bytes), version);
+        }
+    }
+}
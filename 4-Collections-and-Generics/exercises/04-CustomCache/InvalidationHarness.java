@@ -0,0 +1,171 @@
+/**
+ * Checks that invalidations cross between caches in two separate JVMs.
+ * Two child JVMs each run a cache with an InvalidationChannel on its own
+ * loopback port, peered with the other; the node ids come from the ports.
+ * The parent drives them over stdin/stdout: a key written on one node must
+ * disappear from the other node within the timeout, in both directions,
+ * while the writer keeps its own value.
+ *
+ * Usage: java InvalidationHarness [keys] [timeoutMillis]
+ */
+public class InvalidationHarness {
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("node")) {
+            runNode(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+            return;
+        }
+        int keys = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        long timeoutMillis = args.length > 1 ? Long.parseLong(args[1]) : 5_000;
+        
+        int portA = freePort();
+        int portB = freePort();
+        try (Node a = new Node(portA, portB); Node b = new Node(portB, portA)) {
+            a.awaitReady();
+            b.awaitReady();
+            
+            for (int i = 0; i < keys; i++) {
+                a.send("put k" + i + " a" + i);
+            }
+            for (int i = 0; i < keys; i++) {
+                b.send("put k" + i + " b" + i);
+            }
+            long bToA = awaitInvalidated(a, b, "b", keys, timeoutMillis);
+            System.out.printf("B -> A: %d invalidations arrived in %dms%n", keys, bToA);
+            
+            for (int i = 0; i < keys; i++) {
+                a.send("put k" + i + " a" + i);
+            }
+            long aToB = awaitInvalidated(b, a, "a", keys, timeoutMillis);
+            System.out.printf("A -> B: %d invalidations arrived in %dms%n", keys, aToB);
+            System.out.println("PASS");
+        }
+    }
+    
+    /**
+     * Waits until every key is gone from the node, then checks that the
+     * writer still holds the values it wrote
+     *
+     * @return milliseconds until the last key was gone
+     */
+    private static long awaitInvalidated(Node node, Node writer, String prefix, int keys, long timeoutMillis)
+            throws IOException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (int i = 0; i < keys; i++) {
+            String value;
+            while (!(value = node.send("get k" + i)).equals("null")) {
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException(node + " still holds k" + i + "=" + value
+                        + " after " + timeoutMillis + "ms");
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+            }
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        for (int i = 0; i < keys; i++) {
+            String value = writer.send("get k" + i);
+            if (!value.equals(prefix + i)) {
+                throw new IllegalStateException(writer + " lost its own write of k" + i + ": " + value);
+            }
+        }
+        return elapsed;
+    }
+    
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+    
+    /**
+     * Child side: serves put/get commands from stdin against a replicated cache
+     */
+    private static void runNode(int port, int peerPort) throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        InvalidationChannel<String> channel = new InvalidationChannel<>(
+            new InetSocketAddress(loopback, port), List.of(new InetSocketAddress(loopback, peerPort)),
+            key -> key.getBytes(StandardCharsets.UTF_8),
+            bytes -> new String(bytes, StandardCharsets.UTF_8), 64, 5);
+        CustomCache<String, String> cache = new CustomCache<>(new LRUEvictionPolicy<>(),
+            new CacheConfig.Builder<String, String>().maxSize(10_000).invalidationChannel(channel).build());
+        
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        System.out.println("ready");
+        System.out.flush();
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] command = line.split(" ");
+            if (command[0].equals("put")) {
+                cache.put(command[1], command[2], 0);
+                System.out.println("ok");
+            } else if (command[0].equals("get")) {
+                System.out.println(cache.getIfPresent(command[1]));
+            } else {
+                System.out.println("unknown command: " + line);
+            }
+            System.out.flush();
+        }
+        cache.shutdown();
+        channel.close();
+    }
+    
+    /**
+     * Parent side handle on a child JVM
+     */
+    private static class Node implements AutoCloseable {
+        private final int port;
+        private final int peerPort;
+        private final Process process;
+        private final BufferedReader out;
+        private final PrintWriter in;
+        
+        Node(int port, int peerPort) throws IOException {
+            this.port = port;
+            this.peerPort = peerPort;
+            String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+            this.process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    InvalidationHarness.class.getName(), "node", String.valueOf(port), String.valueOf(peerPort))
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+            this.out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+            this.in = new PrintWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8), true);
+        }
+        
+        void awaitReady() throws IOException {
+            String line = out.readLine();
+            if (!"ready".equals(line)) {
+                throw new IllegalStateException(this + " failed to start: " + line);
+            }
+        }
+        
+        /**
+         * Sends one command and returns its reply
+         */
+        String send(String command) throws IOException {
+            in.println(command);
+            String reply = out.readLine();
+            if (reply == null) {
+                throw new IllegalStateException(this + " exited");
+            }
+            return reply;
+        }
+        
+        @Override
+        public void close() {
+            in.close();
+            try {
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        @Override
+        public String toString() {
+            return "node on port " + port + " (peer " + peerPort + ")";
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Least Frequently Used eviction policy implementation. Keys are grouped
+ * into buckets by access count; ties within a bucket are broken by
+ * recency, oldest first.
+ */
+public class LFUEvictionPolicy<K, V> implements EvictionPolicy<K, V> {
+    private final Map<K, Integer> counts;
+    private final TreeMap<Integer, LinkedHashSet<K>> buckets;
+    
+    public LFUEvictionPolicy() {
+        this.counts = new HashMap<>();
+        this.buckets = new TreeMap<>();
+    }
+    
+    @Override
+    public synchronized void onAccess(K key, V value) {
+        Integer count = counts.get(key);
+        if (count != null) {
+            unlink(key, count);
+            link(key, count + 1);
+        }
+    }
+    
+    @Override
+    public synchronized void onAdd(K key, V value) {
+        if (counts.containsKey(key)) {
+            onAccess(key, value);
+        } else {
+            link(key, 1);
+        }
+    }
+    
+    @Override
+    public synchronized void onRemove(K key) {
+        Integer count = counts.remove(key);
+        if (count != null) {
+            unlink(key, count);
+        }
+    }
+    
+    @Override
+    public synchronized K getEvictionCandidate() {
+        if (buckets.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Integer, LinkedHashSet<K>> least = buckets.firstEntry();
+        K victim = least.getValue().iterator().next();
+        counts.remove(victim);
+        unlink(victim, least.getKey());
+        return victim;
+    }
+    
+    private void link(K key, int count) {
+        counts.put(key, count);
+        buckets.computeIfAbsent(count, c -> new LinkedHashSet<>()).add(key);
+    }
+    
+    private void unlink(K key, int count) {
+        LinkedHashSet<K> bucket = buckets.get(count);
+        bucket.remove(key);
+        if (bucket.isEmpty()) {
+            buckets.remove(count);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 /**
- * Least Recently Used eviction policy implementation
+ * Least Recently Used eviction policy implementation. Every access
+ * reorders the map, so all operations are synchronized.
  */
 public class LRUEvictionPolicy<K, V> implements EvictionPolicy<K, V> {
     private final LinkedHashMap<K, V> accessOrder;
@@ -9,17 +10,27 @@ public class LRUEvictionPolicy<K, V> implements EvictionPolicy<K, V> {
     }
     
     @Override
-    public void onAccess(K key, V value) {
+    public synchronized void onAccess(K key, V value) {
         accessOrder.get(key); // Updates access order
     }
     
     @Override
-    public void onAdd(K key, V value) {
+    public synchronized void onAdd(K key, V value) {
         accessOrder.put(key, value);
     }
     
     @Override
-    public K getEvictionCandidate() {
-        return accessOrder.keySet().iterator().next();
+    public synchronized void onRemove(K key) {
+        accessOrder.remove(key);
+    }
+    
+    @Override
+    public synchronized K getEvictionCandidate() {
+        if (accessOrder.isEmpty()) {
+            return null;
+        }
+        K eldest = accessOrder.keySet().iterator().next();
+        accessOrder.remove(eldest);
+        return eldest;
     }
 } 
\ No newline at end of file
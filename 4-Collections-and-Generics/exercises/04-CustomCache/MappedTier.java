@@ -0,0 +1,348 @@
+/**
+ * Second-level cache tier backed by a memory-mapped file.
+ *
+ * File layout: a header with a page table, an open-addressing index of
+ * fixed 16-byte slots, then a data region carved into 1MB pages. Each
+ * page is assigned to one power-of-two size class (64B..1MB) and split
+ * into chunks; free chunks are chained through their first 8 bytes.
+ * Keys and values are stored with Java serialization.
+ *
+ * A record is written before its index slot is published, so the file
+ * can be reopened after a restart and only fully written entries are
+ * visible. Free lists are rebuilt from the index on open.
+ */
+public class MappedTier<K, V> implements Closeable {
+    private static final int MAGIC = 0x434d5431; // "CMT1"
+    private static final int VERSION = 1;
+    private static final int PAGE_SIZE = 1 << 20;
+    private static final int MIN_CHUNK_SHIFT = 6;
+    private static final int SIZE_CLASSES = 15; // 64B .. 1MB
+    private static final int SLOT_BYTES = 16;
+    private static final int RECORD_HEADER = 16;
+    private static final int EMPTY = 0;
+    private static final int OCCUPIED = 1;
+    private static final int DELETED = 2;
+    private static final int UNASSIGNED = -1;
+    
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int slotCount;
+    private final int pageCount;
+    private final int indexOffset;
+    private final int dataOffset;
+    private final long[] freeHeads;
+    private int nextUnassignedPage;
+    private int clockHand;
+    private int size;
+    
+    public MappedTier(Path file, long capacityBytes, int maxEntries) throws IOException {
+        this.pageCount = (int) (capacityBytes / PAGE_SIZE);
+        this.slotCount = Integer.highestOneBit(Math.max(2, maxEntries * 2 - 1)) << 1;
+        this.indexOffset = align(20 + pageCount * 4);
+        this.dataOffset = align(indexOffset + (long) slotCount * SLOT_BYTES);
+        long fileSize = (long) dataOffset + (long) pageCount * PAGE_SIZE;
+        if (pageCount <= 0 || fileSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("capacity must be between 1MB and ~2GB");
+        }
+        
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        this.freeHeads = new long[SIZE_CLASSES];
+        
+        if (isCompatible()) {
+            recover();
+        } else {
+            format();
+        }
+    }
+    
+    public synchronized void put(K key, V value, long expirationTime) {
+        byte[] keyBytes = serialize(key);
+        byte[] valueBytes = serialize(value);
+        if (keyBytes == null || valueBytes == null) {
+            return; // not serializable; drop like any other eviction
+        }
+        int sizeClass = sizeClass(RECORD_HEADER + keyBytes.length + valueBytes.length);
+        if (sizeClass < 0) {
+            return;
+        }
+        
+        int hash = hash(keyBytes);
+        int existing = findSlot(hash, keyBytes);
+        if (existing >= 0) {
+            deleteSlot(existing);
+        }
+        if (size >= slotCount / 2 && !evictOne(-1)) {
+            return;
+        }
+        
+        long address = allocate(sizeClass);
+        if (address < 0) {
+            return;
+        }
+        int offset = (int) address;
+        buffer.putLong(offset, expirationTime);
+        buffer.putInt(offset + 8, keyBytes.length);
+        buffer.putInt(offset + 12, valueBytes.length);
+        buffer.put(offset + RECORD_HEADER, keyBytes);
+        buffer.put(offset + RECORD_HEADER + keyBytes.length, valueBytes);
+        
+        int slot = insertionSlot(hash);
+        int slotOffset = indexOffset + slot * SLOT_BYTES;
+        buffer.putInt(slotOffset + 4, hash);
+        buffer.putLong(slotOffset + 8, address);
+        buffer.putInt(slotOffset, OCCUPIED); // publish last
+        size++;
+    }
+    
+    /**
+     * Removes and returns the entry for the key, or null if absent or expired
+     */
+    public synchronized CacheEntry<V> remove(K key, long currentTime) {
+        byte[] keyBytes = serialize(key);
+        if (keyBytes == null) {
+            return null;
+        }
+        int slot = findSlot(hash(keyBytes), keyBytes);
+        if (slot < 0) {
+            return null;
+        }
+        int offset = (int) buffer.getLong(indexOffset + slot * SLOT_BYTES + 8);
+        long expirationTime = buffer.getLong(offset);
+        int keyLength = buffer.getInt(offset + 8);
+        byte[] valueBytes = new byte[buffer.getInt(offset + 12)];
+        buffer.get(offset + RECORD_HEADER + keyLength, valueBytes);
+        deleteSlot(slot);
+        
+        if (currentTime > expirationTime) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        V value = (V) deserialize(valueBytes);
+        return value == null ? null : new CacheEntry<>(value, currentTime, expirationTime);
+    }
+    
+    public synchronized int size() {
+        return size;
+    }
+    
+    public synchronized void flush() {
+        buffer.force();
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+    
+    private boolean isCompatible() {
+        return buffer.getInt(0) == MAGIC
+            && buffer.getInt(4) == VERSION
+            && buffer.getInt(8) == slotCount
+            && buffer.getInt(12) == pageCount
+            && buffer.getInt(16) == PAGE_SIZE;
+    }
+    
+    private void format() {
+        for (int page = 0; page < pageCount; page++) {
+            setPageClass(page, UNASSIGNED);
+        }
+        for (int slot = 0; slot < slotCount; slot++) {
+            buffer.putInt(indexOffset + slot * SLOT_BYTES, EMPTY);
+        }
+        Arrays.fill(freeHeads, -1L);
+        nextUnassignedPage = 0;
+        size = 0;
+        
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, slotCount);
+        buffer.putInt(12, pageCount);
+        buffer.putInt(16, PAGE_SIZE);
+        buffer.putInt(0, MAGIC);
+        buffer.force();
+    }
+    
+    private void recover() {
+        BitSet used = new BitSet(pageCount * (PAGE_SIZE >>> MIN_CHUNK_SHIFT));
+        for (int slot = 0; slot < slotCount; slot++) {
+            int slotOffset = indexOffset + slot * SLOT_BYTES;
+            if (buffer.getInt(slotOffset) == OCCUPIED) {
+                long address = buffer.getLong(slotOffset + 8);
+                used.set((int) ((address - dataOffset) >>> MIN_CHUNK_SHIFT));
+                size++;
+            }
+        }
+        
+        // Pages are carved in order, so everything after the last assigned page is untouched
+        Arrays.fill(freeHeads, -1L);
+        nextUnassignedPage = 0;
+        for (int page = 0; page < pageCount; page++) {
+            int sizeClass = pageClass(page);
+            if (sizeClass == UNASSIGNED) {
+                continue;
+            }
+            nextUnassignedPage = page + 1;
+            int chunkSize = 1 << (MIN_CHUNK_SHIFT + sizeClass);
+            long pageStart = dataOffset + (long) page * PAGE_SIZE;
+            for (long address = pageStart; address < pageStart + PAGE_SIZE; address += chunkSize) {
+                if (!used.get((int) ((address - dataOffset) >>> MIN_CHUNK_SHIFT))) {
+                    free(address, sizeClass);
+                }
+            }
+        }
+    }
+    
+    private long allocate(int sizeClass) {
+        if (freeHeads[sizeClass] < 0 && nextUnassignedPage < pageCount) {
+            carvePage(nextUnassignedPage++, sizeClass);
+        }
+        while (freeHeads[sizeClass] < 0) {
+            if (!evictOne(sizeClass)) {
+                return -1L;
+            }
+        }
+        long address = freeHeads[sizeClass];
+        freeHeads[sizeClass] = buffer.getLong((int) address);
+        return address;
+    }
+    
+    private void carvePage(int page, int sizeClass) {
+        setPageClass(page, sizeClass);
+        int chunkSize = 1 << (MIN_CHUNK_SHIFT + sizeClass);
+        long pageStart = dataOffset + (long) page * PAGE_SIZE;
+        for (long address = pageStart + PAGE_SIZE - chunkSize; address >= pageStart; address -= chunkSize) {
+            free(address, sizeClass);
+        }
+    }
+    
+    private void free(long address, int sizeClass) {
+        buffer.putLong((int) address, freeHeads[sizeClass]);
+        freeHeads[sizeClass] = address;
+    }
+    
+    /**
+     * CLOCK sweep over the index; frees one entry of the given size class,
+     * or of any class when sizeClass is -1
+     */
+    private boolean evictOne(int sizeClass) {
+        for (int scanned = 0; scanned < slotCount; scanned++) {
+            int slot = clockHand;
+            clockHand = (clockHand + 1) & (slotCount - 1);
+            int slotOffset = indexOffset + slot * SLOT_BYTES;
+            if (buffer.getInt(slotOffset) != OCCUPIED) {
+                continue;
+            }
+            long address = buffer.getLong(slotOffset + 8);
+            if (sizeClass < 0 || classOf(address) == sizeClass) {
+                deleteSlot(slot);
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void deleteSlot(int slot) {
+        int slotOffset = indexOffset + slot * SLOT_BYTES;
+        long address = buffer.getLong(slotOffset + 8);
+        buffer.putInt(slotOffset, DELETED); // unpublish first
+        free(address, classOf(address));
+        size--;
+        
+        // A tombstone followed by an empty slot ends no probe chain, so clear the run
+        int mask = slotCount - 1;
+        if (buffer.getInt(indexOffset + ((slot + 1) & mask) * SLOT_BYTES) == EMPTY) {
+            while (buffer.getInt(indexOffset + slot * SLOT_BYTES) == DELETED) {
+                buffer.putInt(indexOffset + slot * SLOT_BYTES, EMPTY);
+                slot = (slot - 1) & mask;
+            }
+        }
+    }
+    
+    private int findSlot(int hash, byte[] keyBytes) {
+        int mask = slotCount - 1;
+        for (int i = 0, slot = hash & mask; i < slotCount; i++, slot = (slot + 1) & mask) {
+            int slotOffset = indexOffset + slot * SLOT_BYTES;
+            int state = buffer.getInt(slotOffset);
+            if (state == EMPTY) {
+                return -1;
+            }
+            if (state == OCCUPIED && buffer.getInt(slotOffset + 4) == hash
+                    && keyEquals(buffer.getLong(slotOffset + 8), keyBytes)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+    
+    private int insertionSlot(int hash) {
+        int mask = slotCount - 1;
+        int slot = hash & mask;
+        while (buffer.getInt(indexOffset + slot * SLOT_BYTES) == OCCUPIED) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+    
+    private boolean keyEquals(long address, byte[] keyBytes) {
+        int offset = (int) address;
+        if (buffer.getInt(offset + 8) != keyBytes.length) {
+            return false;
+        }
+        for (int i = 0; i < keyBytes.length; i++) {
+            if (buffer.get(offset + RECORD_HEADER + i) != keyBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private int classOf(long address) {
+        return pageClass((int) ((address - dataOffset) / PAGE_SIZE));
+    }
+    
+    private int pageClass(int page) {
+        return buffer.getInt(20 + page * 4);
+    }
+    
+    private void setPageClass(int page, int sizeClass) {
+        buffer.putInt(20 + page * 4, sizeClass);
+    }
+    
+    private static int sizeClass(int recordSize) {
+        int shift = Math.max(MIN_CHUNK_SHIFT, 32 - Integer.numberOfLeadingZeros(recordSize - 1));
+        int sizeClass = shift - MIN_CHUNK_SHIFT;
+        return sizeClass < SIZE_CLASSES ? sizeClass : -1;
+    }
+    
+    private static int hash(byte[] bytes) {
+        int h = Arrays.hashCode(bytes);
+        return h ^ (h >>> 16);
+    }
+    
+    private static int align(long offset) {
+        return (int) ((offset + 4095) & ~4095L);
+    }
+    
+    private static byte[] serialize(Object object) {
+        if (!(object instanceof Serializable)) {
+            return null;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        } catch (IOException e) {
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+    
+    private static Object deserialize(byte[] bytes) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            return null;
+        }
+    }
+}
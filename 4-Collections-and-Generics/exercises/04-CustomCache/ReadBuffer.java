@@ -0,0 +1,74 @@
+/**
+ * Striped, lossy buffer for recording reads without taking a lock.
+ * Each thread hashes to a stripe; when a stripe is full the read is
+ * dropped and the caller is told to drain. Draining must be done by
+ * a single thread at a time.
+ */
+public class ReadBuffer<E> {
+    public enum Status { SUCCESS, FAILED, FULL }
+    
+    private static final int STRIPE_SIZE = 16;
+    private static final int STRIPE_MASK = STRIPE_SIZE - 1;
+    
+    private final Stripe<E>[] stripes;
+    private final int stripeMask;
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ReadBuffer() {
+        int count = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+        this.stripes = new Stripe[Math.max(1, count)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe<>();
+        }
+        this.stripeMask = stripes.length - 1;
+    }
+    
+    public Status offer(E element) {
+        return stripes[probe() & stripeMask].offer(element);
+    }
+    
+    public void drainTo(Consumer<E> consumer) {
+        for (Stripe<E> stripe : stripes) {
+            stripe.drainTo(consumer);
+        }
+    }
+    
+    private static int probe() {
+        int h = (int) Thread.currentThread().getId() * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+    
+    private static final class Stripe<E> {
+        private final AtomicReferenceArray<E> buffer = new AtomicReferenceArray<>(STRIPE_SIZE);
+        private final AtomicLong writeCounter = new AtomicLong();
+        private final AtomicLong readCounter = new AtomicLong();
+        
+        Status offer(E element) {
+            long head = readCounter.get();
+            long tail = writeCounter.get();
+            if (tail - head >= STRIPE_SIZE) {
+                return Status.FULL;
+            }
+            if (writeCounter.compareAndSet(tail, tail + 1)) {
+                buffer.lazySet((int) (tail & STRIPE_MASK), element);
+                return Status.SUCCESS;
+            }
+            return Status.FAILED;
+        }
+        
+        void drainTo(Consumer<E> consumer) {
+            long head = readCounter.get();
+            long tail = writeCounter.get();
+            for (; head < tail; head++) {
+                int index = (int) (head & STRIPE_MASK);
+                E element = buffer.get(index);
+                if (element == null) {
+                    break; // slot claimed but not yet published
+                }
+                buffer.lazySet(index, null);
+                consumer.accept(element);
+            }
+            readCounter.lazySet(head);
+        }
+    }
+}
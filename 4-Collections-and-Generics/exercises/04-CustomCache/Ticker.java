@@ -0,0 +1,14 @@
+/**
+ * Time source for cache timestamps, in milliseconds
+ */
+@FunctionalInterface
+public interface Ticker {
+    long read();
+    
+    /**
+     * Reads System.currentTimeMillis on every call
+     */
+    static Ticker system() {
+        return System::currentTimeMillis;
+    }
+}
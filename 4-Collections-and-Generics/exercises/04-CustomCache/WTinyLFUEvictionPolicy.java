@@ -0,0 +1,185 @@
+/**
+ * Window TinyLFU eviction policy.
+ *
+ * New keys enter a small LRU admission window. Once the main space is
+ * full, a key leaving the window has to compete against the main space's
+ * LRU victim, and the one with the higher sketch frequency is kept. The main space is a
+ * segmented LRU (probation + protected), which keeps one-off scans from
+ * flushing the frequently used keys.
+ *
+ * Reads are recorded into a striped lossy buffer and replayed in batches
+ * under the eviction lock, so the hit path never blocks.
+ */
+public class WTinyLFUEvictionPolicy<K, V> implements EvictionPolicy<K, V> {
+    private static final double WINDOW_PERCENT = 0.01;
+    private static final double PROTECTED_PERCENT = 0.80;
+    
+    private final LinkedHashMap<K, Boolean> window;
+    private final LinkedHashMap<K, Boolean> probation;
+    private final LinkedHashMap<K, Boolean> protectedSegment;
+    private final FrequencySketch<K> sketch;
+    private final ReadBuffer<K> readBuffer;
+    private final ReentrantLock evictionLock;
+    private final int windowMax;
+    private final int mainMax;
+    private final int protectedMax;
+    
+    public WTinyLFUEvictionPolicy(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        this.window = new LinkedHashMap<>(16, 0.75f, true);
+        this.probation = new LinkedHashMap<>(16, 0.75f, true);
+        this.protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+        this.sketch = new FrequencySketch<>(maximumSize);
+        this.readBuffer = new ReadBuffer<>();
+        this.evictionLock = new ReentrantLock();
+        this.windowMax = Math.max(1, (int) (maximumSize * WINDOW_PERCENT));
+        this.mainMax = maximumSize - windowMax;
+        this.protectedMax = (int) (mainMax * PROTECTED_PERCENT);
+    }
+    
+    @Override
+    public void onAccess(K key, V value) {
+        if (readBuffer.offer(key) == ReadBuffer.Status.FULL) {
+            tryDrain();
+        }
+    }
+    
+    @Override
+    public void onAdd(K key, V value) {
+        evictionLock.lock();
+        try {
+            drainReadBuffer();
+            if (window.containsKey(key) || probation.containsKey(key)
+                    || protectedSegment.containsKey(key)) {
+                onHit(key);
+            } else {
+                sketch.increment(key);
+                window.put(key, Boolean.TRUE);
+                spillWindow();
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+    
+    @Override
+    public void onRemove(K key) {
+        evictionLock.lock();
+        try {
+            drainReadBuffer();
+            if (window.remove(key) == null && probation.remove(key) == null) {
+                protectedSegment.remove(key);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+    
+    @Override
+    public K getEvictionCandidate() {
+        evictionLock.lock();
+        try {
+            drainReadBuffer();
+            if (mainSize() > mainMax) {
+                // A window key already won its duel against this victim
+                K victim = mainVictim();
+                removeFromMain(victim);
+                return victim;
+            }
+            if (window.size() >= windowMax || isMainEmpty()) {
+                K candidate = eldest(window);
+                if (candidate == null) {
+                    return null;
+                }
+                window.remove(candidate);
+                if (isMainEmpty()) {
+                    return candidate;
+                }
+                K victim = mainVictim();
+                if (sketch.frequency(candidate) > sketch.frequency(victim)) {
+                    removeFromMain(victim);
+                    probation.put(candidate, Boolean.TRUE);
+                    return victim;
+                }
+                return candidate;
+            }
+            K victim = mainVictim();
+            removeFromMain(victim);
+            return victim;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+    
+    /**
+     * Moves keys beyond the window's size into probation: freely while the
+     * main space has room, then only keys that beat the main victim's
+     * frequency. A winner overfills the main space until the next eviction
+     * takes the victim; a loser stays in the window and is evicted next.
+     */
+    private void spillWindow() {
+        while (window.size() > windowMax) {
+            K candidate = eldest(window);
+            if (mainSize() >= mainMax && !isMainEmpty()
+                    && sketch.frequency(candidate) <= sketch.frequency(mainVictim())) {
+                return;
+            }
+            window.remove(candidate);
+            probation.put(candidate, Boolean.TRUE);
+        }
+    }
+    
+    private void tryDrain() {
+        if (evictionLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+    
+    private void drainReadBuffer() {
+        readBuffer.drainTo(this::onHit);
+    }
+    
+    private void onHit(K key) {
+        sketch.increment(key);
+        if (window.get(key) != null || protectedSegment.get(key) != null) {
+            return; // access order updated by get
+        }
+        if (probation.remove(key) != null) {
+            protectedSegment.put(key, Boolean.TRUE);
+            if (protectedSegment.size() > protectedMax) {
+                K demoted = eldest(protectedSegment);
+                protectedSegment.remove(demoted);
+                probation.put(demoted, Boolean.TRUE);
+            }
+        }
+    }
+    
+    private int mainSize() {
+        return probation.size() + protectedSegment.size();
+    }
+    
+    private boolean isMainEmpty() {
+        return probation.isEmpty() && protectedSegment.isEmpty();
+    }
+    
+    private K mainVictim() {
+        K victim = eldest(probation);
+        return victim != null ? victim : eldest(protectedSegment);
+    }
+    
+    private void removeFromMain(K key) {
+        if (probation.remove(key) == null) {
+            protectedSegment.remove(key);
+        }
+    }
+    
+    private static <K> K eldest(LinkedHashMap<K, Boolean> segment) {
+        return segment.isEmpty() ? null : segment.keySet().iterator().next();
+    }
+}
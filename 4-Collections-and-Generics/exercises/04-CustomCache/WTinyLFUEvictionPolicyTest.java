@@ -0,0 +1,60 @@
+/**
+ * Test cases for WTinyLFUEvictionPolicy
+ */
+public class WTinyLFUEvictionPolicyTest {
+    private static final int CAPACITY = 200;
+    private static final int HOT_KEYS = 190;
+    private static final int REQUESTS = 400_000;
+    
+    @Test
+    void testScanResistance() {
+        double tinyLfu = hitRate(new WTinyLFUEvictionPolicy<>(CAPACITY));
+        double lfu = hitRate(new LFUEvictionPolicy<>());
+        double lru = hitRate(new LRUEvictionPolicy<>());
+        
+        // Half the requests are one-off scan keys, so 0.5 is the ceiling
+        assertTrue(tinyLfu > 0.48, "W-TinyLFU hit rate under scan: " + tinyLfu);
+        // Exact LFU is the ideal here; the sketch's aging and the lossy read
+        // buffer may cost a little
+        assertTrue(tinyLfu > lfu - 0.02, "W-TinyLFU " + tinyLfu + " well below LFU " + lfu);
+        assertTrue(tinyLfu > lru, "W-TinyLFU " + tinyLfu + " not above LRU " + lru);
+    }
+    
+    @Test
+    void testFrequentNewcomerIsAdmitted() {
+        CustomCache<Integer, Integer> cache = new CustomCache<>(CAPACITY, new WTinyLFUEvictionPolicy<>(CAPACITY));
+        for (int key = 0; key < CAPACITY; key++) {
+            cache.put(key, key, 0);
+        }
+        // A key that keeps coming back must eventually win its way in
+        int newcomer = -1;
+        for (int i = 0; i < 20; i++) {
+            if (cache.getIfPresent(newcomer) == null) {
+                cache.put(newcomer, newcomer, 0);
+            }
+        }
+        assertEquals(Integer.valueOf(newcomer), cache.getIfPresent(newcomer));
+        cache.shutdown();
+    }
+    
+    /**
+     * Alternates requests for a hot set that nearly fills the cache with
+     * keys that are never requested again
+     */
+    private static double hitRate(EvictionPolicy<Integer, Integer> policy) {
+        CustomCache<Integer, Integer> cache = new CustomCache<>(CAPACITY, policy);
+        Random random = new Random(42);
+        int scanKey = HOT_KEYS;
+        int hits = 0;
+        for (int i = 0; i < REQUESTS; i++) {
+            int key = i % 2 == 0 ? random.nextInt(HOT_KEYS) : scanKey++;
+            if (cache.getIfPresent(key) != null) {
+                hits++;
+            } else {
+                cache.put(key, key, 0);
+            }
+        }
+        cache.shutdown();
+        return (double) hits / REQUESTS;
+    }
+}
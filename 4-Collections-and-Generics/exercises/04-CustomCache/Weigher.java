@@ -0,0 +1,14 @@
+/**
+ * Computes the relative weight of a cache entry, e.g. its size in bytes
+ */
+@FunctionalInterface
+public interface Weigher<K, V> {
+    int weigh(K key, V value);
+    
+    /**
+     * Weighs every entry as 1, so the weight bound acts as an entry count
+     */
+    static <K, V> Weigher<K, V> singleton() {
+        return (key, value) -> 1;
+    }
+}
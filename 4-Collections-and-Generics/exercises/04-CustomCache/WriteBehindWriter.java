@@ -0,0 +1,184 @@
+/**
+ * Buffers writes and flushes them to the delegate in batches from a
+ * dedicated thread.
+ *
+ * Pending writes are coalesced per key, so only the latest value for a
+ * key is flushed. A batch is flushed once batchSize keys are pending or
+ * the oldest pending write is maxDelayMillis old. When queueCapacity
+ * distinct keys are pending, write() blocks until a flush makes room.
+ * Writes after close() are rejected with an IllegalStateException.
+ * A failed batch is merged back (newer values win) and retried on the
+ * next flush; close() gives up on a store that is still failing.
+ */
+public class WriteBehindWriter<K, V> implements CacheWriter<K, V>, AutoCloseable {
+    private final CacheWriter<K, V> delegate;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final int queueCapacity;
+    private final ReentrantLock lock;
+    private final Condition notFull;
+    private final Condition flushNeeded;
+    private final Thread flusher;
+    private final LatencyHistogram flushLatency;
+    private final AtomicLong coalescedCount;
+    private final AtomicLong failedFlushes;
+    private LinkedHashMap<K, V> pending;
+    private long oldestPendingNanos;
+    private volatile boolean running;
+    
+    public WriteBehindWriter(CacheWriter<K, V> delegate, int batchSize,
+                             long maxDelayMillis, int queueCapacity) {
+        if (batchSize <= 0 || queueCapacity < batchSize || maxDelayMillis <= 0) {
+            throw new IllegalArgumentException(
+                "require 0 < batchSize <= queueCapacity and a positive maxDelayMillis");
+        }
+        this.delegate = delegate;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.queueCapacity = queueCapacity;
+        this.lock = new ReentrantLock();
+        this.notFull = lock.newCondition();
+        this.flushNeeded = lock.newCondition();
+        this.flushLatency = new LatencyHistogram();
+        this.coalescedCount = new AtomicLong();
+        this.failedFlushes = new AtomicLong();
+        this.pending = new LinkedHashMap<>();
+        this.running = true;
+        this.flusher = new Thread(this::runFlusher, "write-behind-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+    
+    @Override
+    public void write(K key, V value) throws InterruptedException {
+        lock.lock();
+        try {
+            if (!running) {
+                throw new IllegalStateException("writer is closed");
+            }
+            if (pending.containsKey(key)) {
+                pending.put(key, value);
+                coalescedCount.incrementAndGet();
+                return;
+            }
+            while (pending.size() >= queueCapacity) {
+                if (!running) {
+                    throw new IllegalStateException("writer is closed");
+                }
+                notFull.await();
+            }
+            if (pending.isEmpty()) {
+                oldestPendingNanos = System.nanoTime();
+            }
+            pending.put(key, value);
+            if (pending.size() >= batchSize) {
+                flushNeeded.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Stops accepting writes and flushes everything still pending. If the
+     * calling thread is interrupted, returns early with the interrupt
+     * status set and the flusher draining in the background.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            running = false;
+            flushNeeded.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    public LatencyHistogram getFlushLatency() {
+        return flushLatency;
+    }
+    
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+    
+    public long getFailedFlushes() {
+        return failedFlushes.get();
+    }
+    
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void runFlusher() {
+        while (true) {
+            LinkedHashMap<K, V> batch;
+            lock.lock();
+            try {
+                while (running && !isFlushDue()) {
+                    long waitNanos = pending.isEmpty()
+                        ? maxDelayNanos
+                        : maxDelayNanos - (System.nanoTime() - oldestPendingNanos);
+                    flushNeeded.awaitNanos(Math.max(1, waitNanos));
+                }
+                if (pending.isEmpty()) {
+                    if (!running) {
+                        return;
+                    }
+                    continue;
+                }
+                batch = pending;
+                pending = new LinkedHashMap<>();
+                notFull.signalAll();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+            if (!flush(batch) && !running) {
+                return; // store is down at shutdown; leave the rest pending
+            }
+        }
+    }
+    
+    private boolean isFlushDue() {
+        return pending.size() >= batchSize
+            || (!pending.isEmpty() && System.nanoTime() - oldestPendingNanos >= maxDelayNanos);
+    }
+    
+    private boolean flush(LinkedHashMap<K, V> batch) {
+        long start = System.nanoTime();
+        try {
+            delegate.writeAll(batch);
+            flushLatency.record(System.nanoTime() - start);
+            return true;
+        } catch (Exception e) {
+            failedFlushes.incrementAndGet();
+            lock.lock();
+            try {
+                // Keep values written while the batch was in flight
+                batch.forEach(pending::putIfAbsent);
+                oldestPendingNanos = start;
+            } finally {
+                lock.unlock();
+            }
+            if (running) {
+                LockSupport.parkNanos(maxDelayNanos);
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * Test cases for WriteBehindWriter
+ */
+public class WriteBehindWriterTest {
+    private Map<String, String> store;
+    private WriteBehindWriter<String, String> writer;
+    
+    @BeforeEach
+    void setUp() {
+        store = new ConcurrentHashMap<>();
+        writer = new WriteBehindWriter<>(store::put, 10, 1_000, 100);
+    }
+    
+    @Test
+    void testCloseFlushesPendingWrites() throws InterruptedException {
+        writer.write("a", "1");
+        writer.write("a", "2");
+        writer.write("b", "3");
+        writer.close();
+        
+        assertEquals("2", store.get("a"));
+        assertEquals("3", store.get("b"));
+        assertEquals(1, writer.getCoalescedCount());
+    }
+    
+    @Test
+    void testWriteAfterCloseIsRejected() {
+        writer.close();
+        
+        assertThrows(IllegalStateException.class, () -> writer.write("a", "1"));
+        assertTrue(store.isEmpty());
+    }
+}
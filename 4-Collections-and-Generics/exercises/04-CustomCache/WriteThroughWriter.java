@@ -0,0 +1,32 @@
+/**
+ * Writes each put synchronously to the delegate before the cache is updated.
+ * At most maxConcurrentWrites writes run at once; further callers block,
+ * which pushes back on writers when the store is slow.
+ */
+public class WriteThroughWriter<K, V> implements CacheWriter<K, V> {
+    private final CacheWriter<K, V> delegate;
+    private final Semaphore permits;
+    private final LatencyHistogram writeLatency;
+    
+    public WriteThroughWriter(CacheWriter<K, V> delegate, int maxConcurrentWrites) {
+        this.delegate = delegate;
+        this.permits = new Semaphore(maxConcurrentWrites);
+        this.writeLatency = new LatencyHistogram();
+    }
+    
+    @Override
+    public void write(K key, V value) throws Exception {
+        permits.acquire();
+        long start = System.nanoTime();
+        try {
+            delegate.write(key, value);
+        } finally {
+            writeLatency.record(System.nanoTime() - start);
+            permits.release();
+        }
+    }
+    
+    public LatencyHistogram getWriteLatency() {
+        return writeLatency;
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * Subscriber that receives events in batches, for handlers with a high
+ * fixed cost per call such as database writes
+ */
+@FunctionalInterface
+public interface BatchEventSubscriber<T> {
+    void onEvents(List<T> events);
+}
@@ -0,0 +1,108 @@
+/**
+ * Adapts a BatchEventSubscriber to the bus. Events accumulate until the
+ * batch is full or the flush interval passes, whichever comes first.
+ *
+ * With a coalescing key, a later event replaces an earlier buffered event
+ * with the same key, so each batch carries only the latest event per key.
+ * Batches are handed to the subscriber one at a time, in order.
+ */
+class BatchingSubscriber<T> implements EventSubscriber<T> {
+    private final BatchEventSubscriber<T> delegate;
+    private final int maxBatchSize;
+    private final Function<? super T, ?> coalescingKey;
+    private final EventStats stats;
+    private final Consumer<Event> deadLetters;
+    private final ReentrantLock bufferLock;
+    private final ReentrantLock flushLock;
+    private final ScheduledFuture<?> flushTask;
+    private List<T> buffer;
+    private Map<Object, T> coalesced;
+    private volatile boolean closed;
+    
+    BatchingSubscriber(BatchEventSubscriber<T> delegate, int maxBatchSize, long maxDelayMillis,
+                       Function<? super T, ?> coalescingKey, ScheduledExecutorService scheduler,
+                       EventStats stats, Consumer<Event> deadLetters) {
+        if (maxBatchSize <= 0 || maxDelayMillis <= 0) {
+            throw new IllegalArgumentException("maxBatchSize and maxDelayMillis must be positive");
+        }
+        this.delegate = delegate;
+        this.maxBatchSize = maxBatchSize;
+        this.coalescingKey = coalescingKey;
+        this.stats = stats;
+        this.deadLetters = deadLetters;
+        this.bufferLock = new ReentrantLock();
+        this.flushLock = new ReentrantLock();
+        this.buffer = new ArrayList<>();
+        this.coalesced = new LinkedHashMap<>();
+        this.flushTask = scheduler.scheduleWithFixedDelay(this::flush,
+            maxDelayMillis, maxDelayMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    @Override
+    public void onEvent(T event) {
+        boolean full;
+        bufferLock.lock();
+        try {
+            if (coalescingKey != null) {
+                if (coalesced.put(coalescingKey.apply(event), event) != null) {
+                    stats.recordCoalesced();
+                }
+                full = coalesced.size() >= maxBatchSize;
+            } else {
+                buffer.add(event);
+                full = buffer.size() >= maxBatchSize;
+            }
+        } finally {
+            bufferLock.unlock();
+        }
+        // Once closed there is no timer, so late arrivals go out at once
+        if (full || closed) {
+            flush();
+        }
+    }
+    
+    /**
+     * Delivers whatever is buffered now
+     */
+    void flush() {
+        flushLock.lock();
+        try {
+            List<T> batch;
+            bufferLock.lock();
+            try {
+                if (coalescingKey != null) {
+                    batch = new ArrayList<>(coalesced.values());
+                    coalesced = new LinkedHashMap<>();
+                } else {
+                    batch = buffer;
+                    buffer = new ArrayList<>();
+                }
+            } finally {
+                bufferLock.unlock();
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                delegate.onEvents(batch);
+                stats.recordBatch(batch.size());
+            } catch (Exception e) {
+                stats.recordError();
+                for (T event : batch) {
+                    deadLetters.accept((Event) event);
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+    
+    /**
+     * Stops the flush timer and delivers the remainder
+     */
+    void close() {
+        closed = true;
+        flushTask.cancel(false);
+        flush();
+    }
+}
@@ -0,0 +1,353 @@
+/**
+ * Bounded dead-letter store. Every dead letter gets a sequential offset.
+ * The newest ones are held in a fixed in-memory ring; when the ring is
+ * full the oldest is spilled to an append-only log of serialized events,
+ * split into segment files named after their first offset. Without a log
+ * directory the oldest are dropped instead.
+ *
+ * Replay streams events from any offset, segment by segment and then from
+ * the ring, so recovering from a long outage never loads the whole backlog.
+ *
+ * Record layout: [int length][serialized event].
+ */
+public class DeadLetterLog implements AutoCloseable {
+    private static final String SUFFIX = ".log";
+    
+    private final Event[] ring;
+    private final Path directory;
+    private final long segmentBytes;
+    private final TreeMap<Long, Path> segments;
+    private final AtomicLong dropped;
+    private FileChannel activeSegment;
+    private long firstOffset;
+    private long spilledOffset;
+    private long nextOffset;
+    
+    /**
+     * @param directory where spilled events are logged, or null to drop them
+     */
+    public DeadLetterLog(int capacity, Path directory, long segmentBytes) throws IOException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.ring = new Event[capacity];
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.segments = new TreeMap<>();
+        this.dropped = new AtomicLong();
+        if (directory != null) {
+            Files.createDirectories(directory);
+            recover();
+        }
+    }
+    
+    /**
+     * Stores the event and returns its offset. An event that can't be
+     * serialized or written is counted as dropped.
+     */
+    public synchronized long append(Event event) {
+        if (nextOffset - spilledOffset == ring.length) {
+            spillOldest();
+        }
+        long offset = nextOffset++;
+        ring[slot(offset)] = event;
+        return offset;
+    }
+    
+    /**
+     * The events still held in memory, oldest first
+     */
+    public synchronized List<Event> recent() {
+        List<Event> events = new ArrayList<>((int) (nextOffset - spilledOffset));
+        for (long offset = spilledOffset; offset < nextOffset; offset++) {
+            events.add(ring[slot(offset)]);
+        }
+        return events;
+    }
+    
+    /**
+     * Oldest offset that can still be replayed
+     */
+    public synchronized long getFirstOffset() {
+        return firstOffset;
+    }
+    
+    public synchronized long getNextOffset() {
+        return nextOffset;
+    }
+    
+    public synchronized long size() {
+        return nextOffset - firstOffset;
+    }
+    
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+    
+    /**
+     * Hands every event from fromOffset up to the current end to the sink,
+     * at most maxPerSecond a second (0 for no limit). Events appended
+     * during the replay are left for the next one; events dropped from
+     * the ring meanwhile, which getDroppedCount counts, are skipped.
+     *
+     * @return the offset to resume from
+     */
+    public long replay(long fromOffset, int maxPerSecond, Consumer<Event> sink) throws IOException {
+        long end;
+        long offset;
+        synchronized (this) {
+            end = nextOffset;
+            offset = Math.max(fromOffset, firstOffset);
+        }
+        long intervalNanos = maxPerSecond > 0 ? 1_000_000_000L / maxPerSecond : 0;
+        long start = System.nanoTime();
+        long delivered = 0;
+        SegmentReader reader = null;
+        try {
+            while (offset < end) {
+                Event event;
+                synchronized (this) {
+                    if (offset < firstOffset) {
+                        // Dropped or deleted while replaying, e.g. pushed out by the sink's own appends
+                        offset = firstOffset;
+                        continue;
+                    }
+                    event = offset >= spilledOffset ? ring[slot(offset)] : null;
+                }
+                if (event == null) {
+                    if (reader == null || reader.offset != offset) {
+                        if (reader != null) {
+                            reader.close();
+                        }
+                        reader = new SegmentReader(offset);
+                    }
+                    event = reader.next();
+                    if (event == null) {
+                        offset++; // unreadable record, skip it
+                        continue;
+                    }
+                }
+                if (intervalNanos > 0) {
+                    long due = start + delivered * intervalNanos;
+                    long wait;
+                    while ((wait = due - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+                sink.accept(event);
+                delivered++;
+                offset++;
+            }
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+        return offset;
+    }
+    
+    /**
+     * Deletes segments whose events all precede the offset, e.g. once a
+     * replay has re-published them
+     */
+    public synchronized void deleteBefore(long offset) throws IOException {
+        while (segments.size() > 1) {
+            Map.Entry<Long, Path> oldest = segments.firstEntry();
+            Long nextBase = segments.higherKey(oldest.getKey());
+            if (nextBase > offset) {
+                return;
+            }
+            Files.deleteIfExists(oldest.getValue());
+            segments.remove(oldest.getKey());
+            firstOffset = nextBase;
+        }
+    }
+    
+    /**
+     * Spills the in-memory events so they survive a restart
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (directory != null) {
+            while (spilledOffset < nextOffset) {
+                spillOldest();
+            }
+        }
+        if (activeSegment != null) {
+            activeSegment.force(false);
+            activeSegment.close();
+            activeSegment = null;
+        }
+    }
+    
+    private int slot(long offset) {
+        return (int) (offset % ring.length);
+    }
+    
+    private void spillOldest() {
+        int slot = slot(spilledOffset);
+        Event event = ring[slot];
+        ring[slot] = null;
+        if (directory == null) {
+            firstOffset++;
+            dropped.incrementAndGet();
+        } else if (!write(spilledOffset, event)) {
+            dropped.incrementAndGet();
+        }
+        spilledOffset++;
+    }
+    
+    private boolean write(long offset, Event event) {
+        byte[] bytes;
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (ObjectOutputStream objects = new ObjectOutputStream(out)) {
+                objects.writeObject(event);
+            }
+            bytes = out.toByteArray();
+        } catch (IOException e) {
+            bytes = new byte[0]; // keep the offset, replay skips the record
+        }
+        try {
+            if (activeSegment == null || activeSegment.size() >= segmentBytes) {
+                rollSegment(offset);
+            }
+            ByteBuffer record = ByteBuffer.allocate(4 + bytes.length);
+            record.putInt(bytes.length).put(bytes).flip();
+            while (record.hasRemaining()) {
+                activeSegment.write(record);
+            }
+            return bytes.length > 0;
+        } catch (IOException e) {
+            // The segment may hold a torn record now; start a fresh one at the next offset
+            closeActiveSegment();
+            return false;
+        }
+    }
+    
+    private void closeActiveSegment() {
+        try {
+            if (activeSegment != null) {
+                activeSegment.close();
+            }
+        } catch (IOException ignored) {
+            // already failing
+        }
+        activeSegment = null;
+    }
+    
+    private void rollSegment(long baseOffset) throws IOException {
+        if (activeSegment != null) {
+            activeSegment.force(false);
+            activeSegment.close();
+        }
+        Path path = directory.resolve(String.format("%020d%s", baseOffset, SUFFIX));
+        activeSegment = FileChannel.open(path, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segments.put(baseOffset, path);
+    }
+    
+    /**
+     * Rebuilds the segment index and next offset from the directory,
+     * cutting off a record torn by a crash mid-write
+     */
+    private void recover() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    segments.put(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())), file);
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        if (segments.isEmpty()) {
+            return;
+        }
+        Map.Entry<Long, Path> last = segments.lastEntry();
+        long count = 0;
+        long validBytes = 0;
+        try (FileChannel channel = FileChannel.open(last.getValue(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            long size = channel.size();
+            while (validBytes + 4 <= size) {
+                header.clear();
+                channel.read(header, validBytes);
+                int length = header.getInt(0);
+                if (length < 0 || validBytes + 4 + length > size) {
+                    break;
+                }
+                validBytes += 4 + length;
+                count++;
+            }
+            channel.truncate(validBytes);
+        }
+        this.firstOffset = segments.firstKey();
+        this.nextOffset = last.getKey() + count;
+        this.spilledOffset = nextOffset;
+        this.activeSegment = FileChannel.open(last.getValue(), StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+    }
+    
+    /**
+     * Sequential reader over the spilled records starting at an offset
+     */
+    private final class SegmentReader implements Closeable {
+        private long offset;
+        private long segmentEnd;
+        private DataInputStream in;
+        
+        SegmentReader(long offset) throws IOException {
+            this.offset = offset;
+            open();
+        }
+        
+        Event next() throws IOException {
+            while (offset >= segmentEnd) {
+                close();
+                open();
+            }
+            offset++;
+            byte[] bytes;
+            try {
+                bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+            } catch (EOFException e) {
+                return null; // lost to a failed write
+            }
+            try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                return (Event) objects.readObject();
+            } catch (IOException | ClassNotFoundException e) {
+                return null;
+            }
+        }
+        
+        private void open() throws IOException {
+            Map.Entry<Long, Path> segment;
+            Long nextBase;
+            synchronized (DeadLetterLog.this) {
+                segment = segments.floorEntry(offset);
+                nextBase = segments.higherKey(offset);
+                // The active segment ends wherever spilling has got to
+                segmentEnd = nextBase != null ? nextBase : spilledOffset;
+            }
+            if (segment == null) {
+                throw new IOException("No segment holds offset " + offset);
+            }
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.getValue())));
+            for (long skip = segment.getKey(); skip < offset; skip++) {
+                in.skipNBytes(in.readInt());
+            }
+        }
+        
+        @Override
+        public void close() throws IOException {
+            if (in != null) {
+                in.close();
+                in = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Test cases for DeadLetterLog
+ */
+public class DeadLetterLogTest {
+    private Path directory;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("dead-letters");
+    }
+    
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+    
+    @Test
+    void testReplaySkipsEventsDroppedByAppendsDuringReplay() throws IOException {
+        DeadLetterLog log = new DeadLetterLog(4, null, 0);
+        appendAll(log, 0, 4);
+        
+        // Every replayed event fails again and brings another with it
+        List<String> replayed = new ArrayList<>();
+        long resumeAt = log.replay(0, 0, event -> {
+            replayed.add(event.getSource());
+            log.append(new Letter("again-" + event.getSource()));
+            log.append(new Letter("new-" + event.getSource()));
+        });
+        
+        assertEquals(List.of("e0", "e2"), replayed);
+        assertEquals(4, resumeAt);
+        assertEquals(4, log.getDroppedCount());
+        assertEquals(8, log.getNextOffset());
+    }
+    
+    @Test
+    void testReplayReadsSpilledEventsWhileAppendsSpillMore() throws IOException {
+        try (DeadLetterLog log = new DeadLetterLog(4, directory, 512)) {
+            appendAll(log, 0, 20);
+            
+            List<String> replayed = new ArrayList<>();
+            long resumeAt = log.replay(0, 0, event -> {
+                replayed.add(event.getSource());
+                log.append(new Letter("again-" + event.getSource()));
+                log.append(new Letter("new-" + event.getSource()));
+            });
+            
+            assertEquals(sources(0, 20), replayed);
+            assertEquals(20, resumeAt);
+            assertEquals(0, log.getDroppedCount());
+            assertEquals(60, log.getNextOffset());
+            
+            List<String> next = new ArrayList<>();
+            log.replay(resumeAt, 0, event -> next.add(event.getSource()));
+            assertEquals(40, next.size());
+            assertEquals("again-e0", next.get(0));
+            assertEquals("new-e19", next.get(39));
+        }
+    }
+    
+    @Test
+    void testReopenRecoversSpilledEventsAndCutsTornRecord() throws IOException {
+        try (DeadLetterLog log = new DeadLetterLog(4, directory, 512)) {
+            appendAll(log, 0, 20);
+        }
+        // A crash mid-write leaves half a record at the end of the last segment
+        Path last;
+        try (Stream<Path> files = Files.list(directory)) {
+            last = files.max(Comparator.naturalOrder()).get();
+        }
+        Files.write(last, new byte[] { 0, 0, 1, 0, 42 }, StandardOpenOption.APPEND);
+        
+        try (DeadLetterLog log = new DeadLetterLog(4, directory, 512)) {
+            assertEquals(20, log.getNextOffset());
+            log.append(new Letter("e20"));
+            
+            List<String> replayed = new ArrayList<>();
+            assertEquals(21, log.replay(0, 0, event -> replayed.add(event.getSource())));
+            assertEquals(sources(0, 21), replayed);
+        }
+    }
+    
+    private static void appendAll(DeadLetterLog log, int from, int to) {
+        for (int i = from; i < to; i++) {
+            assertEquals(i, log.append(new Letter("e" + i)));
+        }
+    }
+    
+    private static List<String> sources(int from, int to) {
+        List<String> sources = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            sources.add("e" + i);
+        }
+        return sources;
+    }
+    
+    private static final class Letter extends Event {
+        private static final long serialVersionUID = 1L;
+        
+        Letter(String source) {
+            super(source);
+        }
+    }
+}
@@ -1,7 +1,10 @@
 /**
- * Base class for all events
+ * Base class for all events. Events are serializable so dead letters can
+ * be logged to disk; subclasses should keep their fields serializable.
  */
-public abstract class Event {
+public abstract class Event implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
     private final long timestamp;
     private final String source;
     
@@ -17,4 +20,12 @@ public abstract class Event {
     public String getSource() {
         return source;
     }
+    
+    /**
+     * Key that orders this event in partitioned delivery: events with
+     * equal keys are handled in publish order. Defaults to the source.
+     */
+    public Object getRoutingKey() {
+        return source;
+    }
 } 
\ No newline at end of file
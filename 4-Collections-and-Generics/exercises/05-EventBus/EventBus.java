@@ -1,28 +1,202 @@
 /**
- * Generic event bus implementation
+ * Generic event bus implementation. Async events go to a cached thread
+ * pool or, when configured, either through a ring buffer read by one
+ * consumer thread per subscriber group, or into a bounded mailbox per
+ * subscriber drained by a shared pool. publishOrdered keeps events with
+ * the same routing key in order on one of a fixed set of lanes.
+ *
+ * Subscribing to a supertype or interface receives every event assignable
+ * to it. The subscribers for each concrete event class are flattened once
+ * into an array snapshot, which subscribe/unsubscribe throw away, so
+ * publishing is one map lookup and an array walk.
  */
 public class EventBus {
+    private static final Subscription[] NO_SUBSCRIPTIONS = new Subscription[0];
+    
     private final ConcurrentHashMap<Class<?>, Set<EventSubscriber>> subscribers;
+    private final ConcurrentHashMap<Class<?>, Subscription[]> dispatchCache;
+    private final Object registryLock;
     private final ExecutorService asyncExecutor;
-    private final Queue<Event> deadLetterQueue;
+    private final RingBufferDispatcher ringDispatcher;
+    private final ExecutorService drainPool;
+    private final PartitionedDispatcher partitions;
+    private final ConcurrentHashMap<EventSubscriber<?>, Mailbox> mailboxes;
+    private final AtomicInteger mailboxNames;
+    private final int defaultMailboxCapacity;
+    private final OverflowPolicy defaultOverflowPolicy;
+    private final ConcurrentHashMap<EventSubscriber<?>, Integer> subscriberGroups;
+    private final AtomicInteger nextGroup;
+    private final int consumerGroups;
+    private final ConcurrentHashMap<BatchEventSubscriber<?>, BatchingSubscriber<?>> batchSubscribers;
+    private ScheduledExecutorService batchScheduler;
+    private final DeadLetterLog deadLetters;
     private final EventStats stats;
     
     public EventBus() {
+        this(new EventBusConfig.Builder().build());
+    }
+    
+    public EventBus(EventBusConfig config) {
         this.subscribers = new ConcurrentHashMap<>();
-        this.asyncExecutor = Executors.newCachedThreadPool();
-        this.deadLetterQueue = new ConcurrentLinkedQueue<>();
+        this.dispatchCache = new ConcurrentHashMap<>();
+        this.registryLock = new Object();
+        this.batchSubscribers = new ConcurrentHashMap<>();
+        try {
+            this.deadLetters = new DeadLetterLog(config.getDeadLetterCapacity(),
+                config.getDeadLetterDirectory(), config.getDeadLetterSegmentBytes());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open dead-letter log", e);
+        }
         this.stats = new EventStats();
+        this.subscriberGroups = new ConcurrentHashMap<>();
+        this.nextGroup = new AtomicInteger();
+        this.consumerGroups = config.getConsumerGroups();
+        this.mailboxes = new ConcurrentHashMap<>();
+        this.mailboxNames = new AtomicInteger();
+        this.defaultMailboxCapacity = config.getMailboxCapacity();
+        this.defaultOverflowPolicy = config.getOverflowPolicy();
+        this.asyncExecutor = config.isRingBufferEnabled() || config.isMailboxEnabled()
+            ? null
+            : Executors.newCachedThreadPool();
+        this.ringDispatcher = config.isRingBufferEnabled()
+            ? new RingBufferDispatcher(config.getRingBufferSize(), config.getProducerType(),
+                  config.getWaitStrategy(), consumerGroups, this::deliverToGroup)
+            : null;
+        if (config.isMailboxEnabled()) {
+            AtomicInteger threadIds = new AtomicInteger();
+            this.drainPool = Executors.newFixedThreadPool(config.getDrainThreads(), runnable -> {
+                Thread thread = new Thread(runnable, "event-mailbox-" + threadIds.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.drainPool = null;
+        }
+        this.partitions = config.isPartitioningEnabled()
+            ? new PartitionedDispatcher(config.getPartitionLanes(), config.getLaneCapacity(), this::deliverToAll)
+            : null;
+    }
+    
+    /**
+     * Subscribes to events of the given type, including its subtypes and
+     * implementors. The type must be an Event subclass or an interface.
+     * A subscriber already registered keeps its consumer group.
+     */
+    public <T> void subscribe(Class<T> eventType, EventSubscriber<T> subscriber) {
+        Integer group = subscriberGroups.get(subscriber);
+        subscribe(eventType, subscriber,
+            group != null ? group : Math.floorMod(nextGroup.getAndIncrement(), consumerGroups));
+    }
+    
+    /**
+     * Subscribes on a specific consumer group; subscribers in one group
+     * share a ring buffer consumer thread. A subscriber stays in one group
+     * until it has unsubscribed from every type.
+     */
+    public <T> void subscribe(Class<T> eventType, EventSubscriber<T> subscriber, int group) {
+        if (group < 0 || group >= consumerGroups) {
+            throw new IllegalArgumentException("group must be in [0, " + consumerGroups + ")");
+        }
+        if (!eventType.isInterface() && !Event.class.isAssignableFrom(eventType)) {
+            throw new IllegalArgumentException(eventType.getName() + " is neither an Event nor an interface");
+        }
+        synchronized (registryLock) {
+            Integer current = subscriberGroups.putIfAbsent(subscriber, group);
+            if (current != null && current != group) {
+                throw new IllegalStateException("Subscriber is already in consumer group " + current);
+            }
+            if (drainPool != null && !mailboxes.containsKey(subscriber)) {
+                addMailbox(subscriber, "subscriber-" + mailboxNames.incrementAndGet(),
+                    defaultMailboxCapacity, defaultOverflowPolicy);
+            }
+            subscribers.computeIfAbsent(eventType, k -> 
+                ConcurrentHashMap.newKeySet()).add(subscriber);
+            dispatchCache.clear();
+        }
     }
     
-    public <T extends Event> void subscribe(Class<T> eventType, EventSubscriber<T> subscriber) {
-        subscribers.computeIfAbsent(eventType, k -> 
-            ConcurrentHashMap.newKeySet()).add(subscriber);
+    /**
+     * Subscribes with a named mailbox of its own capacity and overflow
+     * policy; the bus must be configured with mailboxes
+     */
+    public <T> void subscribe(Class<T> eventType, EventSubscriber<T> subscriber, String name,
+                              int mailboxCapacity, OverflowPolicy overflowPolicy) {
+        if (drainPool == null) {
+            throw new IllegalStateException("EventBus is not configured with mailboxes");
+        }
+        synchronized (registryLock) {
+            if (!mailboxes.containsKey(subscriber)) {
+                addMailbox(subscriber, name, mailboxCapacity, overflowPolicy);
+            }
+        }
+        subscribe(eventType, subscriber);
     }
     
-    public <T extends Event> void unsubscribe(Class<T> eventType, EventSubscriber<T> subscriber) {
-        Set<EventSubscriber> eventSubscribers = subscribers.get(eventType);
-        if (eventSubscribers != null) {
-            eventSubscribers.remove(subscriber);
+    public <T> void unsubscribe(Class<T> eventType, EventSubscriber<T> subscriber) {
+        synchronized (registryLock) {
+            Set<EventSubscriber> eventSubscribers = subscribers.get(eventType);
+            if (eventSubscribers != null && eventSubscribers.remove(subscriber)) {
+                dispatchCache.clear();
+                if (subscribers.values().stream().noneMatch(set -> set.contains(subscriber))) {
+                    subscriberGroups.remove(subscriber);
+                    // Queued events still drain; the mailbox just stops receiving
+                    Mailbox mailbox = mailboxes.remove(subscriber);
+                    if (mailbox != null) {
+                        stats.unregisterSubscriber(mailbox.getStats().getName());
+                    }
+                }
+            }
+        }
+    }
+    
+    private void addMailbox(EventSubscriber<?> subscriber, String name, int capacity, OverflowPolicy overflowPolicy) {
+        Mailbox mailbox = new Mailbox(name, capacity, overflowPolicy,
+            event -> deliverEvent(subscriber, event), this::deadLetter, drainPool);
+        mailboxes.put(subscriber, mailbox);
+        stats.registerSubscriber(mailbox.getStats());
+    }
+    
+    /**
+     * Subscribes a batch handler that gets up to maxBatchSize events at a
+     * time, or whatever arrived within maxDelayMillis
+     */
+    public <T> void subscribeBatch(Class<T> eventType, BatchEventSubscriber<T> subscriber,
+                                   int maxBatchSize, long maxDelayMillis) {
+        subscribeBatch(eventType, subscriber, maxBatchSize, maxDelayMillis, null);
+    }
+    
+    /**
+     * Like subscribeBatch, but within a batch only the latest event for
+     * each coalescing key is delivered
+     */
+    public <T> void subscribeBatch(Class<T> eventType, BatchEventSubscriber<T> subscriber,
+                                   int maxBatchSize, long maxDelayMillis,
+                                   Function<? super T, ?> coalescingKey) {
+        BatchingSubscriber<T> adapter;
+        synchronized (registryLock) {
+            if (batchSubscribers.containsKey(subscriber)) {
+                throw new IllegalStateException("Batch subscriber is already registered");
+            }
+            if (batchScheduler == null) {
+                batchScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "event-batch-flusher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            adapter = new BatchingSubscriber<>(subscriber, maxBatchSize, maxDelayMillis,
+                coalescingKey, batchScheduler, stats, deadLetters::append);
+            batchSubscribers.put(subscriber, adapter);
+        }
+        subscribe(eventType, adapter);
+    }
+    
+    @SuppressWarnings("unchecked")
+    public <T> void unsubscribeBatch(Class<T> eventType, BatchEventSubscriber<T> subscriber) {
+        BatchingSubscriber<T> adapter = (BatchingSubscriber<T>) batchSubscribers.remove(subscriber);
+        if (adapter != null) {
+            unsubscribe(eventType, adapter);
+            adapter.close();
         }
     }
     
@@ -30,19 +204,30 @@ public class EventBus {
         publish(event, false);
     }
     
-    @SuppressWarnings("unchecked")
     public void publish(Event event, boolean async) {
-        Set<EventSubscriber> eventSubscribers = subscribers.get(event.getClass());
+        Subscription[] subscriptions = subscriptionsFor(event.getClass());
         
-        if (eventSubscribers == null || eventSubscribers.isEmpty()) {
-            deadLetterQueue.offer(event);
-            stats.recordDeadLetter();
+        if (subscriptions.length == 0) {
+            deadLetter(event);
             return;
         }
         
         stats.recordPublish();
         
-        for (EventSubscriber subscriber : eventSubscribers) {
+        if (async && ringDispatcher != null) {
+            ringDispatcher.publish(event);
+            return;
+        }
+        
+        if (async && drainPool != null) {
+            for (Subscription subscription : subscriptions) {
+                subscription.mailbox.offer(event);
+            }
+            return;
+        }
+        
+        for (Subscription subscription : subscriptions) {
+            EventSubscriber<?> subscriber = subscription.subscriber;
             if (async) {
                 asyncExecutor.submit(() -> deliverEvent(subscriber, event));
             } else {
@@ -51,19 +236,137 @@ public class EventBus {
         }
     }
     
-    @SuppressWarnings("unchecked")
+    /**
+     * Publishes asynchronously on the lane for the event's routing key.
+     * Subscribers handle events with equal keys one at a time in publish
+     * order; events with other keys may run in parallel.
+     *
+     * @throws IllegalStateException once the bus is shut down
+     */
+    public void publishOrdered(Event event) {
+        if (partitions == null) {
+            throw new IllegalStateException("EventBus is not configured with partition lanes");
+        }
+        Object routingKey = event.getRoutingKey();
+        if (routingKey == null) {
+            throw new IllegalArgumentException("Event has no routing key");
+        }
+        if (subscriptionsFor(event.getClass()).length == 0) {
+            deadLetter(event);
+            return;
+        }
+        partitions.dispatch(routingKey, event);
+        stats.recordPublish();
+    }
+    
+    /**
+     * Number of events waiting on each partition lane
+     */
+    public int[] getLaneDepths() {
+        return partitions == null ? new int[0] : partitions.getLaneDepths();
+    }
+    
+    /**
+     * Runs on a partition lane: delivers to every subscriber in turn
+     */
+    private void deliverToAll(Event event) {
+        for (Subscription subscription : subscriptionsFor(event.getClass())) {
+            deliverEvent(subscription.subscriber, event);
+        }
+    }
+    
+    /**
+     * Runs on a ring consumer thread: delivers to this group's subscribers
+     */
+    private void deliverToGroup(Event event, int group) {
+        for (Subscription subscription : subscriptionsFor(event.getClass())) {
+            if (subscription.group == group) {
+                deliverEvent(subscription.subscriber, event);
+            }
+        }
+    }
+    
+    private Subscription[] subscriptionsFor(Class<?> eventClass) {
+        Subscription[] subscriptions = dispatchCache.get(eventClass);
+        if (subscriptions != null) {
+            return subscriptions;
+        }
+        // Resolve under the registry lock so a concurrent subscribe can't be lost
+        synchronized (registryLock) {
+            return dispatchCache.computeIfAbsent(eventClass, this::resolve);
+        }
+    }
+    
+    /**
+     * Flattens the subscribers of the class, its superclasses and all of
+     * their interfaces, most specific type first, each subscriber once
+     */
+    @SuppressWarnings("rawtypes")
+    private Subscription[] resolve(Class<?> eventClass) {
+        Set<EventSubscriber> resolved = new LinkedHashSet<>();
+        Set<Class<?>> visited = new HashSet<>();
+        Deque<Class<?>> pending = new ArrayDeque<>();
+        pending.add(eventClass);
+        while (!pending.isEmpty()) {
+            Class<?> type = pending.poll();
+            if (!visited.add(type)) {
+                continue;
+            }
+            Set<EventSubscriber> direct = subscribers.get(type);
+            if (direct != null) {
+                resolved.addAll(direct);
+            }
+            if (type.getSuperclass() != null) {
+                pending.add(type.getSuperclass());
+            }
+            pending.addAll(Arrays.asList(type.getInterfaces()));
+        }
+        if (resolved.isEmpty()) {
+            return NO_SUBSCRIPTIONS;
+        }
+        Subscription[] subscriptions = new Subscription[resolved.size()];
+        int i = 0;
+        for (EventSubscriber subscriber : resolved) {
+            subscriptions[i++] = new Subscription(subscriber, subscriberGroups.get(subscriber),
+                mailboxes.get(subscriber));
+        }
+        return subscriptions;
+    }
+    
+    private void deadLetter(Event event) {
+        deadLetters.append(event);
+        stats.recordDeadLetter();
+    }
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
     private void deliverEvent(EventSubscriber subscriber, Event event) {
         try {
             subscriber.onEvent(event);
             stats.recordDelivery();
         } catch (Exception e) {
             stats.recordError();
-            deadLetterQueue.offer(event);
+            deadLetters.append(event);
         }
     }
     
+    /**
+     * The dead letters still held in memory; older ones are in the log
+     */
     public Queue<Event> getDeadLetterQueue() {
-        return new LinkedList<>(deadLetterQueue);
+        return new ArrayDeque<>(deadLetters.recent());
+    }
+    
+    public DeadLetterLog getDeadLetterLog() {
+        return deadLetters;
+    }
+    
+    /**
+     * Re-publishes dead letters from the offset, at most maxPerSecond a
+     * second, and returns the offset to resume from. Events that fail
+     * again are appended to the log with new offsets.
+     */
+    public long replayDeadLetters(long fromOffset, int maxPerSecond) throws IOException {
+        return deadLetters.replay(fromOffset, maxPerSecond, this::publish);
     }
     
     public EventStats getStats() {
@@ -71,6 +374,40 @@ public class EventBus {
     }
     
     public void shutdown() {
-        asyncExecutor.shutdown();
+        if (partitions != null) {
+            partitions.shutdown();
+        }
+        if (ringDispatcher != null) {
+            ringDispatcher.shutdown();
+        } else if (drainPool != null) {
+            drainPool.shutdown();
+        } else {
+            asyncExecutor.shutdown();
+        }
+        synchronized (registryLock) {
+            for (BatchingSubscriber<?> adapter : batchSubscribers.values()) {
+                adapter.close();
+            }
+            if (batchScheduler != null) {
+                batchScheduler.shutdown();
+            }
+        }
+        try {
+            deadLetters.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close dead-letter log: " + e.getMessage());
+        }
+    }
+    
+    private static final class Subscription {
+        final EventSubscriber<?> subscriber;
+        final int group;
+        final Mailbox mailbox; // mailbox mode only
+        
+        Subscription(EventSubscriber<?> subscriber, int group, Mailbox mailbox) {
+            this.subscriber = subscriber;
+            this.group = group;
+            this.mailbox = mailbox;
+        }
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,152 @@
+/**
+ * Configuration for EventBus
+ */
+public class EventBusConfig {
+    private final int ringBufferSize;
+    private final RingBufferDispatcher.ProducerType producerType;
+    private final WaitStrategy waitStrategy;
+    private final int consumerGroups;
+    private final int deadLetterCapacity;
+    private final Path deadLetterDirectory;
+    private final long deadLetterSegmentBytes;
+    private final int mailboxCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final int drainThreads;
+    private final int partitionLanes;
+    private final int laneCapacity;
+    
+    private EventBusConfig(Builder builder) {
+        this.ringBufferSize = builder.ringBufferSize;
+        this.producerType = builder.producerType;
+        this.waitStrategy = builder.waitStrategy;
+        this.consumerGroups = builder.consumerGroups;
+        this.deadLetterCapacity = builder.deadLetterCapacity;
+        this.deadLetterDirectory = builder.deadLetterDirectory;
+        this.deadLetterSegmentBytes = builder.deadLetterSegmentBytes;
+        this.mailboxCapacity = builder.mailboxCapacity;
+        this.overflowPolicy = builder.overflowPolicy;
+        this.drainThreads = builder.drainThreads;
+        this.partitionLanes = builder.partitionLanes;
+        this.laneCapacity = builder.laneCapacity;
+    }
+    
+    // Getters
+    public int getRingBufferSize() { return ringBufferSize; }
+    public RingBufferDispatcher.ProducerType getProducerType() { return producerType; }
+    public WaitStrategy getWaitStrategy() { return waitStrategy; }
+    public int getConsumerGroups() { return consumerGroups; }
+    public boolean isRingBufferEnabled() { return ringBufferSize > 0; }
+    public int getDeadLetterCapacity() { return deadLetterCapacity; }
+    public Path getDeadLetterDirectory() { return deadLetterDirectory; }
+    public long getDeadLetterSegmentBytes() { return deadLetterSegmentBytes; }
+    public int getMailboxCapacity() { return mailboxCapacity; }
+    public OverflowPolicy getOverflowPolicy() { return overflowPolicy; }
+    public int getDrainThreads() { return drainThreads; }
+    public boolean isMailboxEnabled() { return mailboxCapacity > 0; }
+    public int getPartitionLanes() { return partitionLanes; }
+    public int getLaneCapacity() { return laneCapacity; }
+    public boolean isPartitioningEnabled() { return partitionLanes > 0; }
+    
+    public static class Builder {
+        private int ringBufferSize;
+        private RingBufferDispatcher.ProducerType producerType = RingBufferDispatcher.ProducerType.MULTI;
+        private WaitStrategy waitStrategy = WaitStrategy.PARK;
+        private int consumerGroups = 1;
+        private int deadLetterCapacity = 10_000;
+        private Path deadLetterDirectory;
+        private long deadLetterSegmentBytes = 16 << 20;
+        private int mailboxCapacity;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+        private int drainThreads = Runtime.getRuntime().availableProcessors();
+        private int partitionLanes;
+        private int laneCapacity = 1024;
+        
+        /**
+         * Delivers async events through a preallocated ring of this size
+         * (rounded up to a power of two) instead of a thread pool
+         */
+        public Builder ringBuffer(int ringBufferSize) {
+            this.ringBufferSize = ringBufferSize;
+            return this;
+        }
+        
+        /**
+         * SINGLE is faster but only one thread may publish async events
+         */
+        public Builder producerType(RingBufferDispatcher.ProducerType producerType) {
+            this.producerType = producerType;
+            return this;
+        }
+        
+        public Builder waitStrategy(WaitStrategy waitStrategy) {
+            this.waitStrategy = waitStrategy;
+            return this;
+        }
+        
+        /**
+         * Number of consumer threads; each subscriber belongs to one group
+         */
+        public Builder consumerGroups(int consumerGroups) {
+            this.consumerGroups = consumerGroups;
+            return this;
+        }
+        
+        /**
+         * Number of dead letters kept in memory; older ones are spilled to
+         * the dead-letter log, or dropped if there is none
+         */
+        public Builder deadLetterCapacity(int deadLetterCapacity) {
+            this.deadLetterCapacity = deadLetterCapacity;
+            return this;
+        }
+        
+        /**
+         * Spills dead letters to segment files in the directory
+         */
+        public Builder deadLetterLog(Path directory) {
+            this.deadLetterDirectory = directory;
+            return this;
+        }
+        
+        public Builder deadLetterLog(Path directory, long segmentBytes) {
+            this.deadLetterDirectory = directory;
+            this.deadLetterSegmentBytes = segmentBytes;
+            return this;
+        }
+        
+        /**
+         * Gives every subscriber its own bounded mailbox for async events,
+         * drained by a shared pool; the policy applies when a mailbox is full
+         */
+        public Builder mailboxes(int capacity, OverflowPolicy overflowPolicy) {
+            this.mailboxCapacity = capacity;
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+        
+        public Builder drainThreads(int drainThreads) {
+            this.drainThreads = drainThreads;
+            return this;
+        }
+        
+        /**
+         * Enables publishOrdered with this many lanes, each queueing up to
+         * laneCapacity events before publishers block
+         */
+        public Builder partitionLanes(int partitionLanes, int laneCapacity) {
+            this.partitionLanes = partitionLanes;
+            this.laneCapacity = laneCapacity;
+            return this;
+        }
+        
+        public EventBusConfig build() {
+            if (consumerGroups <= 0) {
+                throw new IllegalArgumentException("consumerGroups must be positive");
+            }
+            if (ringBufferSize > 0 && mailboxCapacity > 0) {
+                throw new IllegalArgumentException("Choose either a ring buffer or mailboxes");
+            }
+            return new EventBusConfig(this);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+/**
+ * Test cases for EventBus
+ */
+public class EventBusTest {
+    private EventBus bus;
+    private Path directory;
+    
+    @AfterEach
+    void tearDown() throws IOException {
+        if (bus != null) {
+            bus.shutdown();
+        }
+        if (directory != null) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+    
+    @Test
+    void testResubscribeMovesSubscriberToNewGroup() throws InterruptedException {
+        bus = new EventBus(new EventBusConfig.Builder().ringBuffer(64).consumerGroups(2).build());
+        BlockingQueue<String> threads = new LinkedBlockingQueue<>();
+        EventSubscriber<Note> subscriber = event -> threads.add(Thread.currentThread().getName());
+        
+        bus.subscribe(Note.class, subscriber, 0);
+        bus.publish(new Note("a"), true);
+        assertEquals("event-ring-consumer-0", threads.poll(5, TimeUnit.SECONDS));
+        
+        bus.unsubscribe(Note.class, subscriber);
+        bus.subscribe(Note.class, subscriber, 1);
+        bus.publish(new Note("a"), true);
+        assertEquals("event-ring-consumer-1", threads.poll(5, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    void testGroupChangeWhileSubscribedIsRejected() throws InterruptedException {
+        bus = new EventBus(new EventBusConfig.Builder().ringBuffer(64).consumerGroups(2).build());
+        BlockingQueue<String> threads = new LinkedBlockingQueue<>();
+        EventSubscriber<Note> subscriber = event -> threads.add(Thread.currentThread().getName());
+        bus.subscribe(Note.class, subscriber, 1);
+        
+        assertThrows(IllegalStateException.class, () -> bus.subscribe(Note.class, subscriber, 0));
+        bus.subscribe(Note.class, subscriber); // without a group it keeps its own
+        bus.publish(new Note("a"), true);
+        assertEquals("event-ring-consumer-1", threads.poll(5, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    void testSupertypeAndInterfaceSubscribersReceiveSubtypes() {
+        bus = new EventBus();
+        List<String> received = new ArrayList<>();
+        EventSubscriber<Event> events = event -> received.add("event");
+        EventSubscriber<Tagged> tagged = event -> received.add("tagged");
+        EventSubscriber<Note> notes = event -> received.add("note");
+        bus.subscribe(Event.class, events);
+        bus.subscribe(Tagged.class, tagged);
+        bus.subscribe(Note.class, notes);
+        
+        bus.publish(new TaggedNote("a"));
+        assertEquals(List.of("note", "tagged", "event"), received);
+        
+        received.clear();
+        bus.publish(new Note("a"));
+        assertEquals(List.of("note", "event"), received);
+        
+        // The cached subscriber array must not outlive the subscription
+        received.clear();
+        bus.unsubscribe(Tagged.class, tagged);
+        bus.publish(new TaggedNote("a"));
+        assertEquals(List.of("note", "event"), received);
+    }
+    
+    @Test
+    void testBatchesCoalesceByKeyAndFlushOnClose() {
+        bus = new EventBus();
+        List<List<String>> batches = new ArrayList<>();
+        bus.subscribeBatch(Note.class, events -> batches.add(describe(events)), 3, 60_000, Note::getSource);
+        
+        bus.publish(new Note("a", 1));
+        bus.publish(new Note("b", 1));
+        bus.publish(new Note("a", 2));
+        bus.publish(new Note("c", 1)); // third distinct key fills the batch
+        bus.publish(new Note("d", 1));
+        assertEquals(List.of(List.of("a2", "b1", "c1")), batches);
+        
+        bus.shutdown();
+        bus = null;
+        assertEquals(List.of(List.of("a2", "b1", "c1"), List.of("d1")), batches);
+    }
+    
+    @Test
+    void testRingDrainsPublishedEventsOnShutdown() {
+        bus = new EventBus(new EventBusConfig.Builder().ringBuffer(8).build());
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        bus.subscribe(Note.class, event -> {
+            LockSupport.parkNanos(50_000);
+            received.add(event.getSeq());
+        });
+        for (int i = 0; i < 300; i++) {
+            bus.publish(new Note("a", i), true);
+        }
+        
+        bus.shutdown();
+        assertEquals(sequence(0, 300), received);
+        assertThrows(IllegalStateException.class, () -> bus.publish(new Note("a", 300), true));
+        bus = null;
+    }
+    
+    @Test
+    void testDeadLettersSpillAndReplayAfterReopen() throws IOException {
+        directory = Files.createTempDirectory("event-bus-dead-letters");
+        EventBusConfig config = new EventBusConfig.Builder()
+            .deadLetterCapacity(4)
+            .deadLetterLog(directory, 256)
+            .build();
+        bus = new EventBus(config);
+        for (int i = 0; i < 20; i++) {
+            bus.publish(new Note("a", i)); // nobody is listening
+        }
+        assertEquals(4, bus.getDeadLetterQueue().size());
+        assertEquals(0, bus.getDeadLetterLog().getDroppedCount());
+        bus.shutdown();
+        
+        bus = new EventBus(config);
+        assertEquals(20, bus.getDeadLetterLog().getNextOffset());
+        List<Integer> received = new ArrayList<>();
+        bus.subscribe(Note.class, event -> received.add(event.getSeq()));
+        
+        assertEquals(20, bus.replayDeadLetters(0, 0));
+        assertEquals(sequence(0, 20), received);
+    }
+    
+    @Test
+    void testDropNewestKeepsQueuedEvents() throws InterruptedException {
+        GatedSubscriber subscriber = fillMailbox(OverflowPolicy.DROP_NEWEST);
+        bus.publish(new Note("a", 3), true);
+        bus.publish(new Note("a", 4), true);
+        subscriber.release.countDown();
+        
+        awaitSize(subscriber.received, 3);
+        assertEquals(List.of(0, 1, 2), subscriber.received);
+        assertEquals(2, mailboxStats().getDroppedCount());
+    }
+    
+    @Test
+    void testDropOldestKeepsNewestEvents() throws InterruptedException {
+        GatedSubscriber subscriber = fillMailbox(OverflowPolicy.DROP_OLDEST);
+        bus.publish(new Note("a", 3), true);
+        bus.publish(new Note("a", 4), true);
+        subscriber.release.countDown();
+        
+        awaitSize(subscriber.received, 3);
+        assertEquals(List.of(0, 3, 4), subscriber.received);
+        assertEquals(2, mailboxStats().getDroppedCount());
+    }
+    
+    @Test
+    void testDeadLetterPolicySendsOverflowToLog() throws InterruptedException {
+        GatedSubscriber subscriber = fillMailbox(OverflowPolicy.DEAD_LETTER);
+        bus.publish(new Note("a", 3), true);
+        bus.publish(new Note("a", 4), true);
+        subscriber.release.countDown();
+        
+        awaitSize(subscriber.received, 3);
+        assertEquals(List.of(0, 1, 2), subscriber.received);
+        List<Integer> deadLetters = new ArrayList<>();
+        for (Event event : bus.getDeadLetterQueue()) {
+            deadLetters.add(((Note) event).getSeq());
+        }
+        assertEquals(List.of(3, 4), deadLetters);
+    }
+    
+    @Test
+    void testBlockPolicyHoldsPublisherUntilThereIsRoom() throws InterruptedException {
+        GatedSubscriber subscriber = fillMailbox(OverflowPolicy.BLOCK);
+        Thread publisher = new Thread(() -> bus.publish(new Note("a", 3), true));
+        publisher.start();
+        Thread.sleep(50);
+        assertTrue(publisher.isAlive(), "publisher did not block on a full mailbox");
+        
+        subscriber.release.countDown();
+        publisher.join(5_000);
+        assertFalse(publisher.isAlive());
+        awaitSize(subscriber.received, 4);
+        assertEquals(List.of(0, 1, 2, 3), subscriber.received);
+        assertEquals(0, mailboxStats().getDroppedCount());
+    }
+    
+    @Test
+    void testLanesKeepPublishOrderPerKey() {
+        bus = new EventBus(new EventBusConfig.Builder().partitionLanes(4, 16).build());
+        Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+        Set<String> lanes = ConcurrentHashMap.newKeySet();
+        bus.subscribe(Note.class, event -> {
+            lanes.add(Thread.currentThread().getName());
+            received.computeIfAbsent(event.getSource(), k -> new ArrayList<>()).add(event.getSeq());
+        });
+        for (int i = 0; i < 200; i++) {
+            for (int key = 0; key < 8; key++) {
+                bus.publishOrdered(new Note("key-" + key, i));
+            }
+        }
+        
+        bus.shutdown();
+        assertEquals(8, received.size());
+        for (Map.Entry<String, List<Integer>> entry : received.entrySet()) {
+            assertEquals(sequence(0, 200), entry.getValue(), entry.getKey());
+        }
+        assertTrue(lanes.size() > 1, "every key ran on one lane");
+        assertThrows(IllegalStateException.class, () -> bus.publishOrdered(new Note("key-0", 200)));
+        bus = null;
+    }
+    
+    /**
+     * Starts a mailbox bus whose only subscriber is stuck on event 0 with
+     * events 1 and 2 filling its mailbox
+     */
+    private GatedSubscriber fillMailbox(OverflowPolicy policy) throws InterruptedException {
+        bus = new EventBus(new EventBusConfig.Builder().mailboxes(2, policy).drainThreads(1).build());
+        GatedSubscriber subscriber = new GatedSubscriber();
+        bus.subscribe(Note.class, subscriber);
+        bus.publish(new Note("a", 0), true);
+        assertTrue(subscriber.entered.await(5, TimeUnit.SECONDS));
+        bus.publish(new Note("a", 1), true);
+        bus.publish(new Note("a", 2), true);
+        return subscriber;
+    }
+    
+    private SubscriberStats mailboxStats() {
+        return bus.getStats().getSubscriberStats().values().iterator().next();
+    }
+    
+    private static void awaitSize(List<?> list, int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (list.size() < size && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Thread.sleep(20); // anything beyond the expected count shows up too
+    }
+    
+    private static List<Integer> sequence(int from, int to) {
+        List<Integer> sequence = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            sequence.add(i);
+        }
+        return sequence;
+    }
+    
+    private static List<String> describe(List<Note> notes) {
+        List<String> described = new ArrayList<>();
+        for (Note note : notes) {
+            described.add(note.getSource() + note.getSeq());
+        }
+        return described;
+    }
+    
+    /**
+     * Blocks on the first event until released
+     */
+    private static final class GatedSubscriber implements EventSubscriber<Note> {
+        final List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        
+        @Override
+        public void onEvent(Note event) {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.add(event.getSeq());
+        }
+    }
+    
+    private interface Tagged {
+    }
+    
+    private static class Note extends Event {
+        private static final long serialVersionUID = 1L;
+        
+        private final int seq;
+        
+        Note(String source) {
+            this(source, 0);
+        }
+        
+        Note(String source, int seq) {
+            super(source);
+            this.seq = seq;
+        }
+        
+        int getSeq() {
+            return seq;
+        }
+    }
+    
+    private static final class TaggedNote extends Note implements Tagged {
+        private static final long serialVersionUID = 1L;
+        
+        TaggedNote(String source) {
+            super(source);
+        }
+    }
+}
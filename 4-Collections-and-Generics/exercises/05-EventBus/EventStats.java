@@ -6,18 +6,53 @@ public class EventStats {
     private final AtomicLong deliveryCount;
     private final AtomicLong errorCount;
     private final AtomicLong deadLetterCount;
+    private final AtomicLong batchCount;
+    private final AtomicLong batchedEventCount;
+    private final AtomicLong coalescedCount;
+    private final ConcurrentHashMap<String, SubscriberStats> subscriberStats;
     
     public EventStats() {
         this.publishCount = new AtomicLong();
         this.deliveryCount = new AtomicLong();
         this.errorCount = new AtomicLong();
         this.deadLetterCount = new AtomicLong();
+        this.batchCount = new AtomicLong();
+        this.batchedEventCount = new AtomicLong();
+        this.coalescedCount = new AtomicLong();
+        this.subscriberStats = new ConcurrentHashMap<>();
     }
     
     public void recordPublish() { publishCount.incrementAndGet(); }
     public void recordDelivery() { deliveryCount.incrementAndGet(); }
     public void recordError() { errorCount.incrementAndGet(); }
     public void recordDeadLetter() { deadLetterCount.incrementAndGet(); }
+    public void recordBatch(int size) {
+        batchCount.incrementAndGet();
+        batchedEventCount.addAndGet(size);
+    }
+    public void recordCoalesced() { coalescedCount.incrementAndGet(); }
+    public void registerSubscriber(SubscriberStats stats) { subscriberStats.put(stats.getName(), stats); }
+    public void unregisterSubscriber(String name) { subscriberStats.remove(name); }
+    
+    /**
+     * Mailbox depth, drops and latency per subscriber, by name; empty
+     * unless the bus uses subscriber mailboxes
+     */
+    public Map<String, SubscriberStats> getSubscriberStats() { return new TreeMap<>(subscriberStats); }
+    
+    public double getAverageBatchSize() {
+        long batches = batchCount.get();
+        return batches == 0 ? 0.0 : (double) batchedEventCount.get() / batches;
+    }
+    
+    /**
+     * Share of events handed to batch subscribers that were replaced by a
+     * later event with the same key before delivery
+     */
+    public double getCoalescingRatio() {
+        long received = batchedEventCount.get() + coalescedCount.get();
+        return received == 0 ? 0.0 : (double) coalescedCount.get() / received;
+    }
     
     public double getDeliveryRate() {
         long total = publishCount.get();
@@ -27,9 +62,11 @@ public class EventStats {
     @Override
     public String toString() {
         return String.format(
-            "EventStats{published=%d, delivered=%d, errors=%d, deadLetters=%d, deliveryRate=%.2f}",
+            "EventStats{published=%d, delivered=%d, errors=%d, deadLetters=%d, deliveryRate=%.2f, " +
+            "batches=%d, avgBatchSize=%.1f, coalescingRatio=%.2f}",
             publishCount.get(), deliveryCount.get(), errorCount.get(), 
-            deadLetterCount.get(), getDeliveryRate()
+            deadLetterCount.get(), getDeliveryRate(),
+            batchCount.get(), getAverageBatchSize(), getCoalescingRatio()
         );
     }
 } 
\ No newline at end of file
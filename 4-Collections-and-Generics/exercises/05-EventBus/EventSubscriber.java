@@ -1,7 +1,8 @@
 /**
- * Interface for event subscribers
+ * Interface for event subscribers. T is an Event type or an interface
+ * that events implement.
  */
 @FunctionalInterface
-public interface EventSubscriber<T extends Event> {
+public interface EventSubscriber<T> {
     void onEvent(T event);
 } 
\ No newline at end of file
@@ -0,0 +1,71 @@
+/**
+ * Lock-free latency histogram with power-of-two microsecond buckets.
+ * Percentiles are reported as the upper bound of the bucket they fall
+ * in, so they are accurate to within a factor of two.
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 40;
+    
+    private final AtomicLongArray counts;
+    private final AtomicLong count;
+    private final AtomicLong totalNanos;
+    private final AtomicLong maxNanos;
+    
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.count = new AtomicLong();
+        this.totalNanos = new AtomicLong();
+        this.maxNanos = new AtomicLong();
+    }
+    
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos) / 1000;
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        counts.incrementAndGet(bucket);
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+    
+    public long getCount() {
+        return count.get();
+    }
+    
+    public double getMeanMicros() {
+        long n = count.get();
+        return n == 0 ? 0.0 : totalNanos.get() / 1000.0 / n;
+    }
+    
+    public long getMaxMicros() {
+        return maxNanos.get() / 1000;
+    }
+    
+    /**
+     * Returns the bucket upper bound, in microseconds, below which the given
+     * fraction (0..1) of recorded latencies fall
+     */
+    public long getPercentileMicros(double percentile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(i == 0 ? 0 : (1L << i) - 1, getMaxMicros());
+            }
+        }
+        return getMaxMicros();
+    }
+    
+    @Override
+    public String toString() {
+        return String.format(
+            "LatencyHistogram{count=%d, mean=%.1fus, p50=%dus, p99=%dus, p999=%dus, max=%dus}",
+            getCount(), getMeanMicros(), getPercentileMicros(0.50),
+            getPercentileMicros(0.99), getPercentileMicros(0.999), getMaxMicros()
+        );
+    }
+}
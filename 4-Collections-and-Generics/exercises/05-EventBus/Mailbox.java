@@ -0,0 +1,112 @@
+/**
+ * Bounded queue of pending events for one subscriber, drained by a shared
+ * pool. At most one drain task per mailbox is queued or running at a
+ * time, so a subscriber sees its events in order and a slow one ties up
+ * at most one pool thread. A drain task hands back its thread after a
+ * fixed number of events so busy mailboxes take turns; once the pool is
+ * shutting down it drains to empty instead.
+ */
+class Mailbox {
+    private static final int DRAIN_BATCH = 64;
+    
+    private final BlockingQueue<Envelope> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final Consumer<Event> handler;
+    private final Consumer<Event> deadLetters;
+    private final ExecutorService drainPool;
+    private final SubscriberStats stats;
+    private final AtomicBoolean scheduled;
+    
+    Mailbox(String name, int capacity, OverflowPolicy overflowPolicy, Consumer<Event> handler,
+            Consumer<Event> deadLetters, ExecutorService drainPool) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.handler = handler;
+        this.deadLetters = deadLetters;
+        this.drainPool = drainPool;
+        this.stats = new SubscriberStats(name, queue::size);
+        this.scheduled = new AtomicBoolean();
+    }
+    
+    SubscriberStats getStats() {
+        return stats;
+    }
+    
+    /**
+     * Queues the event, applying the overflow policy if the mailbox is full
+     */
+    void offer(Event event) {
+        Envelope envelope = new Envelope(event, System.nanoTime());
+        if (!queue.offer(envelope)) {
+            switch (overflowPolicy) {
+                case BLOCK:
+                    try {
+                        queue.put(envelope);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        stats.recordDrop();
+                        return;
+                    }
+                    break;
+                case DROP_OLDEST:
+                    while (!queue.offer(envelope)) {
+                        if (queue.poll() != null) {
+                            stats.recordDrop();
+                        }
+                    }
+                    break;
+                case DROP_NEWEST:
+                    stats.recordDrop();
+                    return;
+                case DEAD_LETTER:
+                    stats.recordDrop();
+                    deadLetters.accept(event);
+                    return;
+            }
+        }
+        schedule();
+    }
+    
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                drainPool.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Bus is shut down; nothing will drain what is left
+                scheduled.set(false);
+                for (Envelope envelope; (envelope = queue.poll()) != null; ) {
+                    stats.recordDrop();
+                }
+            }
+        }
+    }
+    
+    private void drain() {
+        try {
+            for (int i = 0; i < DRAIN_BATCH || drainPool.isShutdown(); i++) {
+                Envelope envelope = queue.poll();
+                if (envelope == null) {
+                    break;
+                }
+                handler.accept(envelope.event);
+                stats.recordDelivery(System.nanoTime() - envelope.enqueuedNanos);
+            }
+        } finally {
+            scheduled.set(false);
+            // Events that raced with the end of this run need another run
+            if (!queue.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+    
+    private static final class Envelope {
+        final Event event;
+        final long enqueuedNanos;
+        
+        Envelope(Event event, long enqueuedNanos) {
+            this.event = event;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+}
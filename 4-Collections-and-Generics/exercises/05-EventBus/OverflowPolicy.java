@@ -0,0 +1,24 @@
+/**
+ * What a full subscriber mailbox does with a newly published event
+ */
+public enum OverflowPolicy {
+    /**
+     * Blocks the publisher until the subscriber catches up
+     */
+    BLOCK,
+    
+    /**
+     * Discards the oldest queued event to make room
+     */
+    DROP_OLDEST,
+    
+    /**
+     * Discards the new event
+     */
+    DROP_NEWEST,
+    
+    /**
+     * Sends the new event to the dead-letter log
+     */
+    DEAD_LETTER
+}
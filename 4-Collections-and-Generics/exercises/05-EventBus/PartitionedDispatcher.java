@@ -0,0 +1,120 @@
+/**
+ * Ordered async delivery by routing key, in the style of Kafka partitions.
+ * Each key hashes to one of a fixed set of lanes, and each lane is one
+ * thread handling its queue in arrival order. Events with the same key
+ * are therefore handled one after another, in publish order, while
+ * different keys proceed in parallel on other lanes.
+ *
+ * Dispatches in progress are counted in one word that shutdown also sets
+ * a closed bit in, so an event is either queued ahead of the lanes'
+ * shutdown marker or rejected.
+ */
+class PartitionedDispatcher {
+    private static final Event SHUTDOWN = new Event("shutdown") { };
+    private static final int CLOSED = 1 << 30;
+    
+    private final BlockingQueue<Event>[] queues;
+    private final Thread[] lanes;
+    private final Consumer<Event> handler;
+    private final AtomicInteger dispatching;
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    PartitionedDispatcher(int laneCount, int laneCapacity, Consumer<Event> handler) {
+        this.queues = new BlockingQueue[laneCount];
+        this.lanes = new Thread[laneCount];
+        this.handler = handler;
+        this.dispatching = new AtomicInteger();
+        for (int i = 0; i < laneCount; i++) {
+            BlockingQueue<Event> queue = new ArrayBlockingQueue<>(laneCapacity);
+            queues[i] = queue;
+            lanes[i] = new Thread(() -> runLane(queue), "event-lane-" + i);
+            lanes[i].setDaemon(true);
+            lanes[i].start();
+        }
+    }
+    
+    /**
+     * Queues the event on its key's lane, blocking while that lane is full
+     *
+     * @throws IllegalStateException once the dispatcher is shut down
+     */
+    void dispatch(Object routingKey, Event event) {
+        int current;
+        do {
+            current = dispatching.get();
+            if ((current & CLOSED) != 0) {
+                throw new IllegalStateException("Dispatcher is shut down");
+            }
+        } while (!dispatching.compareAndSet(current, current + 1));
+        try {
+            queues[laneFor(routingKey)].put(event);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for lane capacity", e);
+        } finally {
+            dispatching.decrementAndGet();
+        }
+    }
+    
+    int laneFor(Object routingKey) {
+        int h = routingKey.hashCode();
+        h ^= (h >>> 16);
+        return Math.floorMod(h, queues.length);
+    }
+    
+    /**
+     * Number of events waiting on each lane
+     */
+    int[] getLaneDepths() {
+        int[] depths = new int[queues.length];
+        for (int i = 0; i < queues.length; i++) {
+            depths[i] = queues[i].size();
+        }
+        return depths;
+    }
+    
+    /**
+     * Stops accepting events, lets every lane finish what is queued, then
+     * stops the lane threads
+     */
+    void shutdown() {
+        if ((dispatching.getAndUpdate(current -> current | CLOSED) & CLOSED) != 0) {
+            return;
+        }
+        // Dispatches already admitted queue ahead of the marker; the lanes keep draining meanwhile
+        while (dispatching.get() != CLOSED) {
+            LockSupport.parkNanos(1_000);
+        }
+        for (BlockingQueue<Event> queue : queues) {
+            try {
+                queue.put(SHUTDOWN);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        for (Thread lane : lanes) {
+            try {
+                lane.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+    private void runLane(BlockingQueue<Event> queue) {
+        while (true) {
+            Event event;
+            try {
+                event = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (event == SHUTDOWN) {
+                return;
+            }
+            handler.accept(event);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * Test cases for PartitionedDispatcher
+ */
+public class PartitionedDispatcherTest {
+    @Test
+    void testDispatchAfterShutdownIsRejected() {
+        AtomicInteger handled = new AtomicInteger();
+        PartitionedDispatcher dispatcher = new PartitionedDispatcher(2, 1, event -> handled.incrementAndGet());
+        dispatcher.dispatch("k", new Keyed("k"));
+        dispatcher.shutdown();
+        assertEquals(1, handled.get());
+        
+        // With no lane thread left, a lane of capacity 1 would block the second put forever
+        for (int i = 0; i < 3; i++) {
+            assertThrows(IllegalStateException.class, () -> dispatcher.dispatch("k", new Keyed("k")));
+        }
+        assertEquals(0, dispatcher.getLaneDepths()[dispatcher.laneFor("k")]);
+    }
+    
+    @Test
+    void testDispatchBlockedOnFullLaneIsDrainedByShutdown() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger handled = new AtomicInteger();
+        PartitionedDispatcher dispatcher = new PartitionedDispatcher(1, 1, event -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handled.incrementAndGet();
+        });
+        Thread publisher = new Thread(() -> {
+            for (int i = 0; i < 3; i++) {
+                dispatcher.dispatch("k", new Keyed("k")); // the third waits for room
+            }
+        });
+        publisher.start();
+        Thread.sleep(50);
+        Thread shutdown = new Thread(dispatcher::shutdown);
+        shutdown.start();
+        Thread.sleep(50);
+        release.countDown();
+        publisher.join(5_000);
+        shutdown.join(5_000);
+        
+        assertFalse(shutdown.isAlive(), "shutdown still waiting");
+        assertEquals(3, handled.get());
+    }
+    
+    private static final class Keyed extends Event {
+        private static final long serialVersionUID = 1L;
+        
+        Keyed(String source) {
+            super(source);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * Disruptor-style async dispatcher: a preallocated ring of event slots
+ * read by one dedicated consumer thread per subscriber group.
+ *
+ * Publishers claim a sequence, store the event in its slot and mark the
+ * sequence published; nothing is allocated per event. Every group reads
+ * every sequence and tracks its own progress, and a publisher only wraps
+ * onto a slot once the slowest group has moved past it, so a full ring
+ * pushes back on publishers instead of queueing without bound.
+ *
+ * Shutdown sets a closed bit in the next sequence to claim, so a claim
+ * either lands before it, and is drained, or fails; nothing is claimed
+ * behind the consumers' backs.
+ */
+public class RingBufferDispatcher {
+    public enum ProducerType { SINGLE, MULTI }
+    
+    // Consumer sequences sit 128 bytes apart so groups don't false-share
+    private static final int PAD = 16;
+    private static final long CLOSED = 1L << 62;
+    
+    private final Event[] slots;
+    private final int mask;
+    private final int indexShift;
+    private final ProducerType producerType;
+    private final WaitStrategy waitStrategy;
+    private final ObjIntConsumer<Event> handler;
+    private final AtomicLong nextSequence;
+    private final AtomicLong published;
+    private final AtomicIntegerArray availableRounds;
+    private final AtomicLongArray consumed;
+    private final int groups;
+    private final Thread[] consumers;
+    private volatile long gatingCache;
+    
+    /**
+     * @param handler delivers an event to the subscribers of one group
+     */
+    public RingBufferDispatcher(int bufferSize, ProducerType producerType, WaitStrategy waitStrategy,
+                                int groups, ObjIntConsumer<Event> handler) {
+        int size = Integer.highestOneBit(Math.max(2, bufferSize) * 2 - 1);
+        this.slots = new Event[size];
+        this.mask = size - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(size);
+        this.producerType = producerType;
+        this.waitStrategy = waitStrategy;
+        this.handler = handler;
+        this.nextSequence = new AtomicLong();
+        this.published = new AtomicLong(-1);
+        this.availableRounds = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; i++) {
+            availableRounds.set(i, -1);
+        }
+        this.groups = groups;
+        this.consumed = new AtomicLongArray(groups * PAD);
+        for (int g = 0; g < groups; g++) {
+            consumed.set(g * PAD, -1);
+        }
+        this.gatingCache = -1;
+        
+        this.consumers = new Thread[groups];
+        for (int g = 0; g < groups; g++) {
+            int group = g;
+            consumers[g] = new Thread(() -> consume(group), "event-ring-consumer-" + g);
+            consumers[g].setDaemon(true);
+            consumers[g].start();
+        }
+    }
+    
+    public int getBufferSize() {
+        return slots.length;
+    }
+    
+    /**
+     * Publishes the event, waiting for space if the slowest group is a full ring behind
+     */
+    public void publish(Event event) {
+        long current;
+        do {
+            current = nextSequence.get();
+            if ((current & CLOSED) != 0) {
+                throw new IllegalStateException("Dispatcher is shut down");
+            }
+        } while (!nextSequence.compareAndSet(current, current + 1));
+        long sequence = current;
+        awaitCapacity(sequence);
+        int index = (int) sequence & mask;
+        slots[index] = event;
+        if (producerType == ProducerType.SINGLE) {
+            published.lazySet(sequence);
+        } else {
+            availableRounds.lazySet(index, (int) (sequence >>> indexShift));
+        }
+    }
+    
+    /**
+     * Events published but not yet handled by the slowest group
+     */
+    public long getBacklog() {
+        return Math.max(0, lastClaimed() - minimumConsumed());
+    }
+    
+    /**
+     * Stops accepting events, lets every group drain what was published,
+     * then stops the consumer threads
+     */
+    public void shutdown() {
+        nextSequence.getAndUpdate(sequence -> sequence | CLOSED);
+        for (Thread consumer : consumers) {
+            try {
+                consumer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+    private void awaitCapacity(long sequence) {
+        long wrapPoint = sequence - slots.length;
+        if (wrapPoint <= gatingCache) {
+            return;
+        }
+        long minimum;
+        while (wrapPoint > (minimum = minimumConsumed())) {
+            if ((nextSequence.get() & CLOSED) != 0 && !consumersAlive()) {
+                throw new IllegalStateException("Dispatcher is shut down");
+            }
+            LockSupport.parkNanos(1);
+        }
+        gatingCache = minimum;
+    }
+    
+    private long lastClaimed() {
+        return (nextSequence.get() & ~CLOSED) - 1;
+    }
+    
+    private boolean consumersAlive() {
+        for (Thread consumer : consumers) {
+            if (consumer.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private long minimumConsumed() {
+        long minimum = Long.MAX_VALUE;
+        for (int g = 0; g < groups; g++) {
+            minimum = Math.min(minimum, consumed.get(g * PAD));
+        }
+        return minimum;
+    }
+    
+    /**
+     * Highest sequence from next onward that is published with no gaps
+     */
+    private long highestPublished(long next) {
+        if (producerType == ProducerType.SINGLE) {
+            return published.get();
+        }
+        long limit = lastClaimed();
+        long sequence = next;
+        while (sequence <= limit
+                && availableRounds.get((int) sequence & mask) == (int) (sequence >>> indexShift)) {
+            sequence++;
+        }
+        return sequence - 1;
+    }
+    
+    private void consume(int group) {
+        int slot = group * PAD;
+        long next = 0;
+        int attempts = 0;
+        while (true) {
+            long available = highestPublished(next);
+            if (available < next) {
+                // Exit only once everything claimed before shutdown was handled
+                long last = nextSequence.get();
+                if ((last & CLOSED) != 0 && next >= (last & ~CLOSED)) {
+                    return;
+                }
+                attempts = waitStrategy.idle(attempts);
+                continue;
+            }
+            attempts = 0;
+            for (long sequence = next; sequence <= available; sequence++) {
+                handler.accept(slots[(int) sequence & mask], group);
+            }
+            consumed.lazySet(slot, available);
+            next = available + 1;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Test cases for RingBufferDispatcher
+ */
+public class RingBufferDispatcherTest {
+    private static final int PUBLISHERS = 4;
+    
+    @Test
+    void testPublishRacingShutdownIsDeliveredOrRejected() throws InterruptedException {
+        for (int round = 0; round < 50; round++) {
+            AtomicLong delivered = new AtomicLong();
+            RingBufferDispatcher dispatcher = new RingBufferDispatcher(8,
+                RingBufferDispatcher.ProducerType.MULTI, WaitStrategy.YIELD, 2,
+                (event, group) -> delivered.incrementAndGet());
+            AtomicLong accepted = new AtomicLong();
+            CountDownLatch started = new CountDownLatch(PUBLISHERS);
+            List<Thread> publishers = new ArrayList<>();
+            for (int p = 0; p < PUBLISHERS; p++) {
+                Thread publisher = new Thread(() -> {
+                    started.countDown();
+                    try {
+                        while (true) {
+                            dispatcher.publish(new Ping());
+                            accepted.incrementAndGet();
+                        }
+                    } catch (IllegalStateException e) {
+                        // shut down
+                    }
+                });
+                publisher.start();
+                publishers.add(publisher);
+            }
+            started.await();
+            while (accepted.get() < 100) {
+                Thread.onSpinWait();
+            }
+            dispatcher.shutdown();
+            for (Thread publisher : publishers) {
+                publisher.join(5_000);
+                assertFalse(publisher.isAlive(), "publisher still waiting after shutdown");
+            }
+            
+            // Each accepted event reaches both groups
+            assertEquals(2 * accepted.get(), delivered.get(), "round " + round);
+        }
+    }
+    
+    @Test
+    void testPublisherWaitingForCapacityGivesUpWhenConsumersAreGone() throws InterruptedException {
+        RingBufferDispatcher dispatcher = new RingBufferDispatcher(2,
+            RingBufferDispatcher.ProducerType.SINGLE, WaitStrategy.PARK, 1,
+            (event, group) -> {
+                throw new IllegalStateException("consumer dies");
+            });
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicInteger accepted = new AtomicInteger();
+        Thread publisher = new Thread(() -> {
+            try {
+                for (int i = 0; i < 3; i++) {
+                    dispatcher.publish(new Ping()); // the third has to wait for the dead consumer
+                    accepted.incrementAndGet();
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        publisher.start();
+        Thread.sleep(50);
+        dispatcher.shutdown();
+        publisher.join(5_000);
+        
+        assertFalse(publisher.isAlive(), "publisher still waiting after shutdown");
+        assertEquals(2, accepted.get());
+        assertTrue(failure.get() instanceof IllegalStateException);
+    }
+    
+    private static final class Ping extends Event {
+        private static final long serialVersionUID = 1L;
+        
+        Ping() {
+            super("test");
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * Per-subscriber mailbox statistics: current queue depth, events handled
+ * and dropped, and latency from publish to the end of handling
+ */
+public class SubscriberStats {
+    private final String name;
+    private final IntSupplier depth;
+    private final AtomicLong deliveredCount;
+    private final AtomicLong droppedCount;
+    private final LatencyHistogram latency;
+    
+    public SubscriberStats(String name, IntSupplier depth) {
+        this.name = name;
+        this.depth = depth;
+        this.deliveredCount = new AtomicLong();
+        this.droppedCount = new AtomicLong();
+        this.latency = new LatencyHistogram();
+    }
+    
+    public void recordDelivery(long latencyNanos) {
+        deliveredCount.incrementAndGet();
+        latency.record(latencyNanos);
+    }
+    public void recordDrop() { droppedCount.incrementAndGet(); }
+    
+    public String getName() { return name; }
+    public int getQueueDepth() { return depth.getAsInt(); }
+    public long getDeliveredCount() { return deliveredCount.get(); }
+    public long getDroppedCount() { return droppedCount.get(); }
+    public LatencyHistogram getLatency() { return latency; }
+    
+    @Override
+    public String toString() {
+        return String.format(
+            "SubscriberStats{name=%s, depth=%d, delivered=%d, dropped=%d, p50=%dus, p99=%dus, p999=%dus}",
+            name, getQueueDepth(), deliveredCount.get(), droppedCount.get(),
+            latency.getPercentileMicros(0.50), latency.getPercentileMicros(0.99),
+            latency.getPercentileMicros(0.999)
+        );
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * How a ring buffer consumer waits for the next sequence to be published.
+ * Each strategy trades CPU burned while idle against wake-up latency.
+ */
+public enum WaitStrategy {
+    /**
+     * Spins on the CPU; lowest latency, one core per consumer
+     */
+    BUSY_SPIN {
+        @Override
+        int idle(int attempts) {
+            Thread.onSpinWait();
+            return attempts + 1;
+        }
+    },
+    
+    /**
+     * Spins briefly, then yields to other runnable threads
+     */
+    YIELD {
+        @Override
+        int idle(int attempts) {
+            if (attempts < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+            return attempts + 1;
+        }
+    },
+    
+    /**
+     * Spins, yields, then parks for short intervals; nearly free when idle
+     */
+    PARK {
+        @Override
+        int idle(int attempts) {
+            if (attempts < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (attempts < SPIN_TRIES + YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+            return attempts + 1;
+        }
+    };
+    
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long PARK_NANOS = 50_000;
+    
+    /**
+     * Waits once and returns the updated attempt count; callers reset it to
+     * zero after making progress
+     */
+    abstract int idle(int attempts);
+}
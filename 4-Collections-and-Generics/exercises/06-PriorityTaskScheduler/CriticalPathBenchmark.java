@@ -0,0 +1,95 @@
+/**
+ * Compares makespan under static priorities and critical-path ranks on
+ * random DAGs. Each task type has a fixed simulated run time; static
+ * priorities are random, as they would be when set without regard to the
+ * graph. A warm-up DAG first teaches each scheduler its per-type durations;
+ * critical-path ranks are also measured cold, with the DAG scheduled
+ * before any type has run, so they are only learned along the way.
+ *
+ * Usage: java CriticalPathBenchmark [tasks] [workers] [seeds]
+ */
+public class CriticalPathBenchmark {
+    private static final long[] TYPE_MICROS = {200, 500, 1000, 3000};
+    private static final int CHAINS = 3;
+    
+    public static void main(String[] args) throws InterruptedException {
+        int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int workers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int seeds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        
+        double staticTotal = 0;
+        double criticalTotal = 0;
+        double coldTotal = 0;
+        for (int seed = 1; seed <= seeds; seed++) {
+            long staticMillis = run(TaskScheduler.PriorityMode.STATIC, tasks, workers, seed, true);
+            long criticalMillis = run(TaskScheduler.PriorityMode.CRITICAL_PATH, tasks, workers, seed, true);
+            long coldMillis = run(TaskScheduler.PriorityMode.CRITICAL_PATH, tasks, workers, seed, false);
+            staticTotal += staticMillis;
+            criticalTotal += criticalMillis;
+            coldTotal += coldMillis;
+            System.out.printf("seed %d: static=%dms criticalPath=%dms criticalPathCold=%dms%n",
+                seed, staticMillis, criticalMillis, coldMillis);
+        }
+        System.out.printf("mean makespan: static=%.1fms criticalPath=%.1fms (%.1f%% shorter) "
+                + "criticalPathCold=%.1fms (%.1f%% shorter)%n",
+            staticTotal / seeds, criticalTotal / seeds, 100 * (1 - criticalTotal / staticTotal),
+            coldTotal / seeds, 100 * (1 - coldTotal / staticTotal));
+    }
+    
+    private static long run(TaskScheduler.PriorityMode mode, int tasks, int workers, int seed, boolean warmUp)
+            throws InterruptedException {
+        TaskScheduler<Integer> scheduler = new TaskScheduler<>(workers,
+            type -> LockSupport.parkNanos(TYPE_MICROS[type] * 1000), mode);
+        scheduler.start();
+        
+        if (warmUp) {
+            // So the estimates come from history as they would in production
+            scheduleAll(scheduler, randomDag(scheduler, tasks / 4, -seed));
+            scheduler.awaitIdle(1, TimeUnit.MINUTES);
+        }
+        
+        List<Task<Integer>> dag = randomDag(scheduler, tasks, seed);
+        long start = System.nanoTime();
+        scheduleAll(scheduler, dag);
+        scheduler.awaitIdle(1, TimeUnit.MINUTES);
+        long makespan = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        scheduler.shutdown();
+        return makespan;
+    }
+    
+    /**
+     * Most tasks are quick independent leaves. The rest are slow and extend
+     * one of a few chains, sometimes also waiting on an earlier task; those
+     * chains decide the makespan if they start late.
+     */
+    private static List<Task<Integer>> randomDag(TaskScheduler<Integer> scheduler, int tasks, long seed) {
+        Random random = new Random(seed);
+        List<Task<Integer>> dag = new ArrayList<>(tasks);
+        List<Task<Integer>> chainTails = new ArrayList<>();
+        for (int i = 0; i < tasks; i++) {
+            boolean slow = random.nextInt(4) == 0;
+            int type = slow ? 2 + random.nextInt(2) : random.nextInt(2);
+            Task<Integer> task = new Task<>(type, random.nextInt(10), "type-" + type);
+            if (slow) {
+                if (chainTails.size() < CHAINS) {
+                    chainTails.add(task);
+                } else {
+                    int chain = random.nextInt(CHAINS);
+                    scheduler.addDependency(task, chainTails.get(chain));
+                    chainTails.set(chain, task);
+                }
+                if (i > 0 && random.nextBoolean()) {
+                    scheduler.addDependency(task, dag.get(random.nextInt(i)));
+                }
+            }
+            dag.add(task);
+        }
+        return dag;
+    }
+    
+    private static void scheduleAll(TaskScheduler<Integer> scheduler, List<Task<Integer>> dag) {
+        for (Task<Integer> task : dag) {
+            scheduler.schedule(task);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Measures how much a TaskJournal costs in scheduling throughput: the same
+ * batch of independent tasks runs with and without a journal, alternating,
+ * and the median rates are compared. Each task spins for a given number of
+ * microseconds; 0 gives the worst case, where journaling is most of the work.
+ *
+ * Usage: java JournalBenchmark [tasks] [workMicros] [rounds] [journalFile]
+ */
+public class JournalBenchmark {
+    private static final TaskJournal.Codec<Integer> INT_CODEC = new TaskJournal.Codec<Integer>() {
+        @Override
+        public byte[] encode(Integer data) {
+            return ByteBuffer.allocate(4).putInt(data).array();
+        }
+        
+        @Override
+        public Integer decode(byte[] bytes) {
+            return ByteBuffer.wrap(bytes).getInt();
+        }
+    };
+    
+    public static void main(String[] args) throws Exception {
+        int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        long workNanos = (args.length > 1 ? Long.parseLong(args[1]) : 5) * 1000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 7;
+        Path file = args.length > 3 ? Paths.get(args[3]) : Files.createTempFile("tasks", ".journal");
+        
+        run(tasks, workNanos, null); // warm-up
+        double[] plain = new double[rounds];
+        double[] journaled = new double[rounds];
+        for (int round = 0; round < rounds; round++) {
+            plain[round] = run(tasks, workNanos, null);
+            Files.deleteIfExists(file);
+            journaled[round] = run(tasks, workNanos, file);
+            System.out.printf("round %d: plain=%.0f tasks/s journaled=%.0f tasks/s%n",
+                round + 1, plain[round], journaled[round]);
+        }
+        Files.deleteIfExists(file);
+        Arrays.sort(plain);
+        Arrays.sort(journaled);
+        double plainMedian = plain[rounds / 2];
+        double journaledMedian = journaled[rounds / 2];
+        System.out.printf("median: plain=%.0f tasks/s journaled=%.0f tasks/s (%.1f%% drop)%n",
+            plainMedian, journaledMedian, 100 * (1 - journaledMedian / plainMedian));
+    }
+    
+    /**
+     * @return tasks per second from the first schedule until the journal is durable
+     */
+    private static double run(int tasks, long workNanos, Path file) throws Exception {
+        TaskJournal<Integer> journal = file != null ? new TaskJournal<>(file, INT_CODEC) : null;
+        TaskScheduler<Integer> scheduler = new TaskScheduler<>(4, data -> {
+            long end = System.nanoTime() + workNanos;
+            while (System.nanoTime() < end) {
+                Thread.onSpinWait();
+            }
+        }, TaskScheduler.PriorityMode.STATIC, journal);
+        scheduler.start();
+        
+        long start = System.nanoTime();
+        for (int i = 0; i < tasks; i++) {
+            scheduler.schedule(new Task<>(i, i & 7));
+        }
+        scheduler.awaitIdle(10, TimeUnit.MINUTES);
+        if (journal != null) {
+            journal.sync();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        
+        scheduler.shutdown();
+        if (journal != null) {
+            journal.close();
+        }
+        return tasks / seconds;
+    }
+}
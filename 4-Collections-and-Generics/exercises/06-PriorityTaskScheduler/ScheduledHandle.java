@@ -0,0 +1,57 @@
+/**
+ * Handle for a delayed task, a recurring schedule or a deadline held in
+ * the scheduler's timing wheel. Cancelling unlinks it from its wheel
+ * bucket in O(1).
+ */
+public class ScheduledHandle {
+    private final Runnable action;
+    private final Runnable onCancel;
+    private final long periodNanos;
+    private final Predicate<ScheduledHandle> canceller;
+    private volatile boolean cancelled;
+    
+    // Guarded by the scheduler's timer lock
+    long dueNanos;
+    TimerWheel.Node<ScheduledHandle> node;
+    boolean done;
+    
+    ScheduledHandle(Runnable action, Runnable onCancel, long dueNanos, long periodNanos,
+                    Predicate<ScheduledHandle> canceller) {
+        this.action = action;
+        this.onCancel = onCancel;
+        this.dueNanos = dueNanos;
+        this.periodNanos = periodNanos;
+        this.canceller = canceller;
+    }
+    
+    /**
+     * Stops the timer. Returns false if it was already cancelled or, for a
+     * one-shot timer, has already fired.
+     */
+    public boolean cancel() {
+        if (!canceller.test(this)) {
+            return false;
+        }
+        cancelled = true;
+        if (onCancel != null) {
+            onCancel.run();
+        }
+        return true;
+    }
+    
+    public boolean isCancelled() {
+        return cancelled;
+    }
+    
+    public boolean isRecurring() {
+        return periodNanos > 0;
+    }
+    
+    long getPeriodNanos() {
+        return periodNanos;
+    }
+    
+    Runnable getAction() {
+        return action;
+    }
+}
@@ -1,23 +1,55 @@
 /**
- * Generic task class with priority support
+ * Generic task class with priority support.
+ *
+ * A task also keeps its edges in the dependency DAG: the tasks waiting on
+ * it, and a counter of what it still waits for. The counter starts at one
+ * for the pending schedule() call, so whichever of "scheduled" and "last
+ * dependency completed" happens last brings it to zero and releases the
+ * task, exactly once.
+ *
+ * The type groups tasks whose durations are alike, for the scheduler's
+ * critical-path estimates.
  */
 public class Task<T> implements Comparable<Task<T>> {
+    private static final AtomicLong ids = new AtomicLong();
+    
+    private final long id;
     private final T data;
     private final int priority;
+    private final String type;
     private final long creationTime;
     private final Set<Task<T>> dependencies;
-    private TaskStatus status;
+    private final List<Task<T>> dependents;
+    private final AtomicInteger pendingCount;
+    private volatile TaskStatus status;
+    private volatile ScheduledHandle deadline;
+    private volatile double rank;
+    private volatile long rankVersion;
+    private double readyRank;
+    private volatile boolean journaled;
+    private boolean scheduled; // guarded by this
     
     public Task(T data, int priority) {
+        this(data, priority, "default");
+    }
+    
+    public Task(T data, int priority, String type) {
+        this.id = ids.incrementAndGet();
         this.data = data;
         this.priority = priority;
+        this.type = type;
+        this.rank = Double.NaN;
         this.creationTime = System.currentTimeMillis();
-        this.dependencies = new HashSet<>();
+        this.dependencies = ConcurrentHashMap.newKeySet();
+        this.dependents = new ArrayList<>();
+        this.pendingCount = new AtomicInteger(1);
         this.status = TaskStatus.PENDING;
     }
     
+    public long getId() { return id; }
     public T getData() { return data; }
     public int getPriority() { return priority; }
+    public String getType() { return type; }
     public long getCreationTime() { return creationTime; }
     public TaskStatus getStatus() { return status; }
     
@@ -25,6 +57,11 @@ public class Task<T> implements Comparable<Task<T>> {
         this.status = status;
     }
     
+    public boolean isFinished() {
+        return status == TaskStatus.COMPLETED || status == TaskStatus.FAILED
+            || status == TaskStatus.CANCELLED;
+    }
+    
     public void addDependency(Task<T> task) {
         dependencies.add(task);
     }
@@ -34,8 +71,135 @@ public class Task<T> implements Comparable<Task<T>> {
             .allMatch(task -> task.getStatus() == TaskStatus.COMPLETED);
     }
     
+    /**
+     * Registers dependent as waiting on this task, unless this task has
+     * already finished. Returns whether the edge was added.
+     */
+    synchronized boolean addDependent(Task<T> dependent) {
+        if (isFinished()) {
+            return false;
+        }
+        dependents.add(dependent);
+        return true;
+    }
+    
+    synchronized List<Task<T>> getDependents() {
+        return new ArrayList<>(dependents);
+    }
+    
+    Set<Task<T>> getDependencies() {
+        return dependencies;
+    }
+    
+    /**
+     * Moves a pending task to RUNNING; false if it was already finished,
+     * e.g. by a missed deadline or a cancel
+     */
+    synchronized boolean markRunning() {
+        if (status != TaskStatus.PENDING) {
+            return false;
+        }
+        status = TaskStatus.RUNNING;
+        return true;
+    }
+    
+    /**
+     * Records that the task was scheduled, so it is outstanding until it
+     * finishes; false if it has already finished, e.g. by a deadline that
+     * passed before it was scheduled
+     */
+    synchronized boolean markScheduled() {
+        if (isFinished()) {
+            return false;
+        }
+        scheduled = true;
+        return true;
+    }
+    
+    synchronized boolean isScheduled() {
+        return scheduled;
+    }
+    
+    /**
+     * Marks the task finished and returns the tasks that were waiting on
+     * it, or null if it had already finished
+     */
+    synchronized List<Task<T>> finish(TaskStatus finalStatus) {
+        if (isFinished()) {
+            return null;
+        }
+        status = finalStatus;
+        return new ArrayList<>(dependents);
+    }
+    
+    /**
+     * Like finish, but only if the task has not started running
+     */
+    synchronized List<Task<T>> abort(TaskStatus finalStatus) {
+        return status == TaskStatus.PENDING ? finish(finalStatus) : null;
+    }
+    
+    ScheduledHandle getDeadline() {
+        return deadline;
+    }
+    
+    void setDeadline(ScheduledHandle deadline) {
+        this.deadline = deadline;
+    }
+    
+    /**
+     * Cached upward rank, NaN until computed, after the graph below changed,
+     * or if it was computed under other duration estimates
+     */
+    double getRank(long estimateVersion) {
+        return rankVersion == estimateVersion ? rank : Double.NaN;
+    }
+    
+    void setRank(double rank, long estimateVersion) {
+        this.rank = rank;
+        this.rankVersion = estimateVersion;
+    }
+    
+    /**
+     * Rank the task had when it entered the ready queue; fixed while queued
+     */
+    double getReadyRank() {
+        return readyRank;
+    }
+    
+    void setReadyRank(double readyRank) {
+        this.readyRank = readyRank;
+    }
+    
+    /**
+     * Whether the journal has written this task's definition. Racing
+     * appends may both write it, which the journal tolerates.
+     */
+    boolean isJournaled() {
+        return journaled;
+    }
+    
+    void markJournaled() {
+        journaled = true;
+    }
+    
+    /**
+     * Counts one more thing to wait for; fails once the task is released
+     */
+    boolean retain() {
+        return pendingCount.getAndUpdate(count -> count > 0 ? count + 1 : count) > 0;
+    }
+    
+    /**
+     * Counts one wait as satisfied; true for the call that releases the task
+     */
+    boolean release() {
+        return pendingCount.decrementAndGet() == 0;
+    }
+    
     @Override
     public int compareTo(Task<T> other) {
-        return Integer.compare(other.priority, this.priority); // Higher priority first
+        int byPriority = Integer.compare(other.priority, this.priority); // Higher priority first
+        return byPriority != 0 ? byPriority : Long.compare(this.id, other.id);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,525 @@
+/**
+ * Write-ahead journal of scheduler events: task definitions, schedules,
+ * dependency edges, starts and completions, appended to a single file.
+ *
+ * Appending encodes the record into an in-memory buffer, so the
+ * scheduler's threads never touch the disk. Buffers are striped by thread
+ * so appending threads rarely contend. Once per commit interval (10ms by
+ * default), or sooner if a buffer is half full or someone calls sync(), a
+ * flusher thread swaps in fresh buffers, writes the full ones in one call
+ * and forces them (group commit). Appends only wait if a buffer fills
+ * before the flusher gets to it. A crash can lose up to a commit interval
+ * of records; sync() waits until everything appended so far is on disk.
+ *
+ * Records of one batch land in stripe order rather than append order, so
+ * recovery never depends on the order of records in the file.
+ *
+ * Record layout: [int length][byte kind][fields]. A task's definition is
+ * written along with the first record that mentions it.
+ */
+public class TaskJournal<T> implements AutoCloseable {
+    private static final byte DEFINE = 'D';
+    private static final byte SCHEDULE = 'S';
+    private static final byte DEPEND = 'E';
+    private static final byte START = 'R';
+    private static final byte FINISH = 'F';
+    
+    private static final int STRIPES = 8;
+    private static final int STRIPE_BYTES = 256 << 10;
+    private static final long DEFAULT_COMMIT_INTERVAL_MILLIS = 10;
+    
+    /**
+     * Converts task data to and from bytes
+     */
+    public interface Codec<T> {
+        byte[] encode(T data) throws IOException;
+        T decode(byte[] bytes) throws IOException;
+    }
+    
+    private final Path path;
+    private final Codec<T> codec;
+    private final long commitIntervalNanos;
+    private final Stripe[] stripes;
+    private final ReentrantLock flushLock;
+    private final Condition flushNeeded;
+    private final Object durableLock;
+    private final Thread flusher;
+    private FileChannel channel;
+    private Path compactingPath;
+    private boolean flushRequested;
+    private volatile IOException failure;
+    private volatile boolean closed;
+    
+    public TaskJournal(Path path) throws IOException {
+        this(path, javaSerialization());
+    }
+    
+    public TaskJournal(Path path, Codec<T> codec) throws IOException {
+        this(path, codec, DEFAULT_COMMIT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * @param commitInterval how long a batch may build up before it is
+     *        forced; longer means fewer forces but more to lose in a crash
+     */
+    public TaskJournal(Path path, Codec<T> codec, long commitInterval, TimeUnit unit) throws IOException {
+        this.path = path;
+        this.codec = codec;
+        this.commitIntervalNanos = unit.toNanos(commitInterval);
+        this.stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.flushLock = new ReentrantLock();
+        this.flushNeeded = flushLock.newCondition();
+        this.durableLock = new Object();
+        Files.deleteIfExists(compactionPath()); // a compaction cut short by a crash
+        truncateTornTail();
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+        this.flusher = new Thread(this::runFlusher, "task-journal");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+    
+    public static <T> Codec<T> javaSerialization() {
+        return new Codec<T>() {
+            @Override
+            public byte[] encode(T data) throws IOException {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                    out.writeObject(data);
+                }
+                return bytes.toByteArray();
+            }
+            
+            @Override
+            @SuppressWarnings("unchecked")
+            public T decode(byte[] bytes) throws IOException {
+                try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    return (T) in.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+    }
+    
+    /**
+     * @param notBeforeMillis wall-clock time the task was delayed to, or 0
+     */
+    public void scheduled(Task<T> task, long notBeforeMillis) {
+        append(SCHEDULE, task, null, notBeforeMillis);
+    }
+    
+    public void dependency(Task<T> task, Task<T> dependency) {
+        append(DEPEND, task, dependency, dependency.getId());
+    }
+    
+    public void started(Task<T> task) {
+        append(START, task, null, 0);
+    }
+    
+    public void finished(Task<T> task, TaskStatus status) {
+        append(FINISH, task, null, status.ordinal());
+    }
+    
+    /**
+     * Waits until every record appended before this call is on disk
+     */
+    public void sync() throws IOException {
+        long[] targets = new long[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            Stripe stripe = stripes[i];
+            stripe.lock.lock();
+            try {
+                targets[i] = stripe.appended;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        requestFlush();
+        synchronized (durableLock) {
+            for (int i = 0; i < STRIPES; i++) {
+                while (stripes[i].durable < targets[i] && failure == null) {
+                    try {
+                        durableLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted waiting for the journal");
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+    
+    /**
+     * Reads the journal and rebuilds the work that never finished. Tasks
+     * get new ids; the old ones key the result. Call this before anything
+     * is appended, and follow it with beginCompaction().
+     */
+    Recovered<T> read() throws IOException {
+        Map<Long, Task<T>> tasks = new LinkedHashMap<>();
+        Map<Long, Long> scheduled = new HashMap<>();
+        Map<Long, TaskStatus> finished = new HashMap<>();
+        List<long[]> edges = new ArrayList<>();
+        TaskStatus[] statuses = TaskStatus.values();
+        
+        long validBytes = 0;
+        long size = Files.size(path);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            while (validBytes + 4 <= size) {
+                int length = in.readInt();
+                if (length <= 0 || validBytes + 4 + length > size) {
+                    break;
+                }
+                byte[] record = new byte[length];
+                in.readFully(record);
+                validBytes += 4 + length;
+                
+                DataInputStream fields = new DataInputStream(new ByteArrayInputStream(record));
+                byte kind = fields.readByte();
+                long id = fields.readLong();
+                switch (kind) {
+                    case DEFINE: {
+                        int priority = fields.readInt();
+                        byte[] type = new byte[fields.readInt()];
+                        fields.readFully(type);
+                        byte[] data = new byte[fields.readInt()];
+                        fields.readFully(data);
+                        tasks.put(id, new Task<>(codec.decode(data), priority,
+                            new String(type, StandardCharsets.UTF_8)));
+                        break;
+                    }
+                    case SCHEDULE:
+                        scheduled.put(id, fields.readLong());
+                        break;
+                    case DEPEND:
+                        edges.add(new long[] { id, fields.readLong() });
+                        break;
+                    case FINISH:
+                        finished.put(id, statuses[fields.readByte()]);
+                        break;
+                    default:
+                        break; // START only matters to someone reading the file
+                }
+            }
+        }
+        
+        Recovered<T> recovered = new Recovered<>();
+        // A task waiting on one that failed or was cancelled has failed too
+        Map<Long, List<Long>> dependentsOf = new HashMap<>();
+        for (long[] edge : edges) {
+            dependentsOf.computeIfAbsent(edge[1], key -> new ArrayList<>()).add(edge[0]);
+        }
+        Deque<Long> doomed = new ArrayDeque<>();
+        finished.forEach((id, status) -> {
+            if (status != TaskStatus.COMPLETED) {
+                doomed.push(id);
+            }
+        });
+        while (!doomed.isEmpty()) {
+            for (Long dependent : dependentsOf.getOrDefault(doomed.pop(), List.of())) {
+                if (!finished.containsKey(dependent)) {
+                    finished.put(dependent, TaskStatus.FAILED);
+                    doomed.push(dependent);
+                    Task<T> task = tasks.get(dependent);
+                    if (task != null) {
+                        task.setStatus(TaskStatus.FAILED);
+                        recovered.failed.put(dependent, task);
+                    }
+                }
+            }
+        }
+        tasks.forEach((id, task) -> {
+            if (!finished.containsKey(id)) {
+                recovered.tasks.put(id, task);
+            }
+        });
+        for (long[] edge : edges) {
+            if (recovered.tasks.containsKey(edge[0]) && recovered.tasks.containsKey(edge[1])) {
+                recovered.edges.add(edge);
+            }
+        }
+        scheduled.forEach((id, notBefore) -> {
+            if (recovered.tasks.containsKey(id)) {
+                recovered.notBeforeMillis.put(id, notBefore);
+            }
+        });
+        return recovered;
+    }
+    
+    /**
+     * Sends appends to a fresh file until commitCompaction(), so the
+     * recovered work can be re-journaled without the finished history
+     */
+    synchronized void beginCompaction() throws IOException {
+        compactingPath = compactionPath();
+        FileChannel fresh = FileChannel.open(compactingPath, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        channel.close();
+        channel = fresh;
+    }
+    
+    /**
+     * Once the fresh file is durable, atomically replaces the old journal with it
+     */
+    void commitCompaction() throws IOException {
+        sync();
+        synchronized (this) {
+            Files.move(compactingPath, path, StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+            compactingPath = null;
+        }
+    }
+    
+    /**
+     * Flushes what is buffered and closes the file
+     */
+    @Override
+    public void close() throws IOException {
+        sync();
+        closed = true;
+        requestFlush();
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            channel.close();
+        }
+    }
+    
+    private void truncateTornTail() throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            long size = file.size();
+            long validBytes = 0;
+            while (validBytes + 4 <= size) {
+                header.clear();
+                file.read(header, validBytes);
+                int length = header.getInt(0);
+                if (length <= 0 || validBytes + 4 + length > size) {
+                    break; // torn by a crash mid-write
+                }
+                validBytes += 4 + length;
+            }
+            file.truncate(validBytes);
+        }
+    }
+    
+    private Path compactionPath() {
+        return path.resolveSibling(path.getFileName() + ".compacting");
+    }
+    
+    private void append(byte kind, Task<T> task, Task<T> other, long value) {
+        if (closed) {
+            throw new IllegalStateException("Task journal is closed");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Task journal is failing", failure);
+        }
+        // Encode definitions outside the lock. Two threads may both define a
+        // task that is new to the journal; reading keeps either copy.
+        byte[] taskDefinition;
+        byte[] otherDefinition;
+        try {
+            taskDefinition = task.isJournaled() ? null : definition(task);
+            otherDefinition = other == null || other.isJournaled() ? null : definition(other);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't encode task data", e);
+        }
+        int length = kind == FINISH ? 10 : kind == START ? 9 : 17;
+        int needed = 4 + length;
+        needed += taskDefinition != null ? 4 + taskDefinition.length : 0;
+        needed += otherDefinition != null ? 4 + otherDefinition.length : 0;
+        
+        Stripe stripe = stripes[(int) Thread.currentThread().getId() & (STRIPES - 1)];
+        boolean halfFull;
+        stripe.lock.lock();
+        try {
+            while (stripe.active.remaining() < needed) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Task journal is failing", failure);
+                }
+                if (stripe.active.position() == 0) {
+                    stripe.active = ByteBuffer.allocate(Math.max(stripe.active.capacity() * 2, needed));
+                    break;
+                }
+                // Full: wait for the flusher to swap buffers
+                requestFlush();
+                try {
+                    stripe.roomAvailable.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new UncheckedIOException(new InterruptedIOException("Interrupted appending to the journal"));
+                }
+            }
+            ByteBuffer buffer = stripe.active;
+            if (taskDefinition != null) {
+                buffer.putInt(taskDefinition.length).put(taskDefinition);
+            }
+            if (otherDefinition != null) {
+                buffer.putInt(otherDefinition.length).put(otherDefinition);
+            }
+            buffer.putInt(length).put(kind).putLong(task.getId());
+            if (kind == FINISH) {
+                buffer.put((byte) value);
+            } else if (kind != START) {
+                buffer.putLong(value);
+            }
+            stripe.appended++;
+            int half = buffer.capacity() / 2;
+            halfFull = buffer.position() >= half && buffer.position() - needed < half;
+        } finally {
+            stripe.lock.unlock();
+        }
+        if (taskDefinition != null) {
+            task.markJournaled();
+        }
+        if (otherDefinition != null) {
+            other.markJournaled();
+        }
+        if (halfFull) {
+            requestFlush(); // don't wait out the interval
+        }
+    }
+    
+    private void requestFlush() {
+        flushLock.lock();
+        try {
+            flushRequested = true;
+            flushNeeded.signal();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+    
+    private void runFlusher() {
+        ByteBuffer[] batch = new ByteBuffer[STRIPES];
+        long[] batchEnds = new long[STRIPES];
+        while (true) {
+            boolean closing = closed;
+            flushLock.lock();
+            try {
+                long due = System.nanoTime() + commitIntervalNanos;
+                long wait;
+                while (!flushRequested && !closing && (wait = due - System.nanoTime()) > 0) {
+                    flushNeeded.awaitNanos(wait);
+                }
+                flushRequested = false;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                flushLock.unlock();
+            }
+            
+            int count = 0;
+            for (int i = 0; i < STRIPES; i++) {
+                Stripe stripe = stripes[i];
+                stripe.lock.lock();
+                try {
+                    batchEnds[i] = stripe.appended;
+                    if (stripe.active.position() > 0) {
+                        ByteBuffer full = stripe.active;
+                        stripe.active = stripe.flushing;
+                        stripe.flushing = full;
+                        full.flip();
+                        batch[count++] = full;
+                        stripe.roomAvailable.signalAll();
+                    }
+                } finally {
+                    stripe.lock.unlock();
+                }
+            }
+            if (count == 0 && closing) {
+                return;
+            }
+            
+            if (count > 0) {
+                try {
+                    synchronized (this) {
+                        long remaining = 0;
+                        for (int i = 0; i < count; i++) {
+                            remaining += batch[i].remaining();
+                        }
+                        while (remaining > 0) {
+                            remaining -= channel.write(batch, 0, count);
+                        }
+                        channel.force(false);
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                }
+                for (int i = 0; i < count; i++) {
+                    batch[i].clear();
+                }
+            }
+            synchronized (durableLock) {
+                if (failure == null) {
+                    for (int i = 0; i < STRIPES; i++) {
+                        stripes[i].durable = batchEnds[i];
+                    }
+                }
+                durableLock.notifyAll();
+            }
+            if (failure != null) {
+                for (Stripe stripe : stripes) {
+                    stripe.lock.lock();
+                    try {
+                        stripe.roomAvailable.signalAll();
+                    } finally {
+                        stripe.lock.unlock();
+                    }
+                }
+                return;
+            }
+        }
+    }
+    
+    /**
+     * The task's DEFINE record, or null if it has been written already
+     */
+    private byte[] definition(Task<T> task) throws IOException {
+        if (task.isJournaled()) {
+            return null;
+        }
+        byte[] data = codec.encode(task.getData());
+        byte[] type = task.getType().getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(1 + 8 + 4 + 4 + type.length + 4 + data.length)
+            .put(DEFINE).putLong(task.getId()).putInt(task.getPriority())
+            .putInt(type.length).put(type)
+            .putInt(data.length).put(data)
+            .array();
+    }
+    
+    /**
+     * One appending buffer and its spare; the flusher writes the spare
+     * while appends fill the other
+     */
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition roomAvailable = lock.newCondition();
+        ByteBuffer active = ByteBuffer.allocate(STRIPE_BYTES);
+        ByteBuffer flushing = ByteBuffer.allocate(STRIPE_BYTES);
+        long appended;
+        volatile long durable;
+    }
+    
+    /**
+     * Unfinished work read back from a journal, keyed by the old task ids
+     */
+    static final class Recovered<T> {
+        final Map<Long, Task<T>> tasks = new LinkedHashMap<>();
+        final Map<Long, Task<T>> failed = new LinkedHashMap<>();
+        final Map<Long, Long> notBeforeMillis = new HashMap<>();
+        final List<long[]> edges = new ArrayList<>();
+    }
+}
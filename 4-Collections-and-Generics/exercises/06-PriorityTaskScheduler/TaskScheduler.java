@@ -1,88 +1,502 @@
 /**
- * Generic task scheduler with priority and dependency management
+ * Generic task scheduler with priority and dependency management.
+ *
+ * Tasks form a DAG. Each task counts the dependencies it still waits for,
+ * and a finishing task decrements the counters of its own dependents
+ * only, so completion costs O(out-degree). A task whose count reaches
+ * zero goes into a concurrent priority queue that worker threads block
+ * on; nothing is polled or re-queued. A task whose dependency failed is
+ * failed without running.
+ *
+ * Delayed tasks, recurring schedules and deadlines wait in a hierarchical
+ * timing wheel driven by a timer thread. When a delayed task comes due its
+ * schedule() happens, handing it to the DAG as above. The wheel counts in
+ * units of 1024ns, so its finest buckets are about a millisecond wide.
+ * Between firings the timer thread sleeps until the wheel's next occupied
+ * bucket comes round, so a timer hours away costs no wake-ups.
+ *
+ * In CRITICAL_PATH mode ready tasks are ordered by upward rank instead of
+ * static priority: a task's estimated duration plus the longest estimated
+ * path through its dependents to a sink. Estimates are the per-type run
+ * times recorded in TaskStats, so tasks heading long chains start first
+ * and don't wait behind short, high-priority leaves.
+ *
+ * With a TaskJournal every schedule, edge, start and finish is journaled,
+ * and recover() rebuilds the unfinished part of the graph after a restart.
+ * Tasks that were running at the crash run again.
  */
 public class TaskScheduler<T> {
-    private final PriorityQueue<Task<T>> taskQueue;
-    private final Map<Task<T>, Set<Task<T>>> dependencyGraph;
+    public enum PriorityMode { STATIC, CRITICAL_PATH }
+    
+    private final PriorityBlockingQueue<Task<T>> readyQueue;
     private final ExecutorService executor;
+    private final int threadCount;
+    private final PriorityMode priorityMode;
+    private final Consumer<T> processor;
     private final TaskStats stats;
+    private final TaskJournal<T> journal;
+    private final Task<T> stopSignal;
+    private final AtomicInteger outstanding;
+    private final AtomicBoolean started;
+    private final TimerWheel<ScheduledHandle> timerWheel;
+    private final ReentrantLock timerLock;
+    private final Condition timerWork;
+    private final Thread timerThread;
+    private final long epochNanos;
+    private volatile boolean running;
     
     public TaskScheduler(int threadCount) {
-        this.taskQueue = new PriorityQueue<>();
-        this.dependencyGraph = new ConcurrentHashMap<>();
+        this(threadCount, data -> {
+            try {
+                Thread.sleep(100); // Simulate work
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+    
+    /**
+     * @param processor runs each task's data on a worker thread
+     */
+    public TaskScheduler(int threadCount, Consumer<T> processor) {
+        this(threadCount, processor, PriorityMode.STATIC);
+    }
+    
+    public TaskScheduler(int threadCount, Consumer<T> processor, PriorityMode priorityMode) {
+        this(threadCount, processor, priorityMode, null);
+    }
+    
+    /**
+     * @param journal records the graph so recover() can rebuild it, or null
+     */
+    public TaskScheduler(int threadCount, Consumer<T> processor, PriorityMode priorityMode,
+                         TaskJournal<T> journal) {
+        this.readyQueue = priorityMode == PriorityMode.CRITICAL_PATH
+            ? new PriorityBlockingQueue<>(11, TaskScheduler::compareByRank)
+            : new PriorityBlockingQueue<>();
         this.executor = Executors.newFixedThreadPool(threadCount);
+        this.threadCount = threadCount;
+        this.priorityMode = priorityMode;
+        this.processor = processor;
         this.stats = new TaskStats();
+        this.journal = journal;
+        this.stopSignal = new Task<>(null, Integer.MIN_VALUE);
+        stopSignal.setReadyRank(Double.NEGATIVE_INFINITY);
+        this.outstanding = new AtomicInteger();
+        this.started = new AtomicBoolean();
+        this.epochNanos = System.nanoTime();
+        this.timerWheel = new TimerWheel<>(0);
+        this.timerLock = new ReentrantLock();
+        this.timerWork = timerLock.newCondition();
+        this.running = true;
+        this.timerThread = new Thread(this::runTimer, "task-timer");
+        timerThread.setDaemon(true);
+        timerThread.start();
     }
     
+    /**
+     * Submits the task; it runs once all its dependencies have completed.
+     * Dependencies may be added before or after scheduling, but not once
+     * the task has been released to run.
+     */
     public void schedule(Task<T> task) {
-        dependencyGraph.put(task, new HashSet<>());
-        if (task.areDependenciesComplete()) {
-            taskQueue.offer(task);
+        if (journal != null) {
+            journal.scheduled(task, 0);
         }
+        countOutstanding(task);
         stats.recordScheduled();
+        if (task.release()) {
+            enqueue(task);
+        }
+    }
+    
+    /**
+     * Schedules the task after a delay. Cancelling the handle before then
+     * cancels the task, and its dependents fail.
+     */
+    public ScheduledHandle schedule(Task<T> task, long delay, TimeUnit unit) {
+        if (journal != null) {
+            journal.scheduled(task, System.currentTimeMillis() + unit.toMillis(delay));
+        }
+        countOutstanding(task);
+        stats.recordScheduled();
+        return addTimer(() -> {
+            if (task.release()) {
+                enqueue(task);
+            }
+        }, () -> {
+            if (finish(task, task.abort(TaskStatus.CANCELLED))) {
+                stats.recordCancelled();
+            }
+        }, unit.toNanos(delay), 0);
+    }
+    
+    /**
+     * Schedules a fresh task from the factory every period, starting after
+     * initialDelay, until the handle is cancelled. Runs are not skipped if
+     * the timer falls behind.
+     */
+    public ScheduledHandle scheduleAtFixedRate(Supplier<Task<T>> taskFactory, long initialDelay,
+                                               long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be positive");
+        }
+        return addTimer(() -> schedule(taskFactory.get()), null,
+            unit.toNanos(initialDelay), unit.toNanos(period));
+    }
+    
+    /**
+     * Fails the task if it has not started within the timeout. The timeout
+     * may run out before the task is scheduled; it is then failed without
+     * ever counting towards awaitIdle.
+     */
+    public ScheduledHandle setDeadline(Task<T> task, long timeout, TimeUnit unit) {
+        ScheduledHandle handle = addTimer(() -> {
+            if (finish(task, task.abort(TaskStatus.FAILED))) {
+                stats.recordFailed();
+                stats.recordDeadlineMissed();
+            }
+        }, null, unit.toNanos(timeout), 0);
+        task.setDeadline(handle);
+        return handle;
     }
     
     public void addDependency(Task<T> task, Task<T> dependency) {
-        dependencyGraph.computeIfAbsent(task, k -> new HashSet<>()).add(dependency);
+        if (!task.retain()) {
+            throw new IllegalStateException("Task " + task.getId() + " has already been released to run");
+        }
         task.addDependency(dependency);
+        if (journal != null) {
+            journal.dependency(task, dependency);
+        }
+        if (dependency.addDependent(task)) {
+            invalidateRanks(dependency);
+        } else if (task.release()) {
+            // Dependency had already finished, and that was the last wait
+            enqueue(task);
+        }
     }
     
-    public void start() {
-        while (!taskQueue.isEmpty()) {
-            Task<T> task = taskQueue.poll();
-            if (task.areDependenciesComplete()) {
-                executeTask(task);
+    /**
+     * Rebuilds the tasks the journal shows as unfinished, with their
+     * dependencies, and schedules those that had been scheduled, keeping
+     * what is left of any delay. Call before scheduling anything new.
+     *
+     * @return the recovered tasks by their id before the restart; tasks
+     *         failed by a failed dependency are included, already FAILED
+     */
+    public Map<Long, Task<T>> recover() throws IOException {
+        if (journal == null) {
+            throw new IllegalStateException("No journal to recover from");
+        }
+        TaskJournal.Recovered<T> recovered = journal.read();
+        journal.beginCompaction();
+        for (long[] edge : recovered.edges) {
+            addDependency(recovered.tasks.get(edge[0]), recovered.tasks.get(edge[1]));
+        }
+        long now = System.currentTimeMillis();
+        recovered.notBeforeMillis.forEach((id, notBefore) -> {
+            Task<T> task = recovered.tasks.get(id);
+            if (notBefore > now) {
+                schedule(task, notBefore - now, TimeUnit.MILLISECONDS);
             } else {
-                // Re-queue with lower priority
-                taskQueue.offer(task);
+                schedule(task);
+            }
+        });
+        journal.commitCompaction();
+        
+        Map<Long, Task<T>> tasks = new LinkedHashMap<>(recovered.tasks);
+        tasks.putAll(recovered.failed);
+        return tasks;
+    }
+    
+    /**
+     * Starts the worker threads; tasks released before this wait in the queue
+     */
+    public void start() {
+        if (started.compareAndSet(false, true)) {
+            for (int i = 0; i < threadCount; i++) {
+                executor.execute(this::runWorker);
             }
         }
     }
     
-    private void executeTask(Task<T> task) {
-        executor.submit(() -> {
+    /**
+     * Waits until every scheduled task has finished or the timeout passes
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (outstanding) {
+            while (outstanding.get() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(outstanding, remaining);
+            }
+        }
+        return true;
+    }
+    
+    private void runWorker() {
+        while (true) {
+            Task<T> task;
             try {
-                task.setStatus(TaskStatus.RUNNING);
-                stats.recordStarted();
-                
-                // Simulate task execution
-                processTask(task);
-                
-                task.setStatus(TaskStatus.COMPLETED);
-                stats.recordCompleted();
-                
-                // Check dependent tasks
-                updateDependentTasks(task);
-                
-            } catch (Exception e) {
-                task.setStatus(TaskStatus.FAILED);
+                task = readyQueue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (task == stopSignal) {
+                return;
+            }
+            executeTask(task);
+        }
+    }
+    
+    private void executeTask(Task<T> task) {
+        if (!task.areDependenciesComplete()) {
+            // A dependency failed
+            if (finish(task, task.abort(TaskStatus.FAILED))) {
                 stats.recordFailed();
             }
-        });
+            return;
+        }
+        if (!task.markRunning()) {
+            return; // already failed by its deadline or cancelled
+        }
+        if (journal != null) {
+            journal.started(task);
+        }
+        TaskStatus finalStatus;
+        long start = System.nanoTime();
+        try {
+            stats.recordStarted();
+            processor.accept(task.getData());
+            finalStatus = TaskStatus.COMPLETED;
+        } catch (Throwable t) {
+            // Errors too: the task must finish and the worker keep running
+            finalStatus = TaskStatus.FAILED;
+        }
+        stats.recordDuration(task.getType(), System.nanoTime() - start);
+        if (finalStatus == TaskStatus.COMPLETED) {
+            stats.recordCompleted();
+        } else {
+            stats.recordFailed();
+        }
+        finish(task, task.finish(finalStatus));
     }
     
-    private void processTask(Task<T> task) {
-        // Implement actual task processing here
+    /**
+     * Releases the dependents of a task that just finished; dependents is
+     * null if it had finished already. Returns whether this call finished it.
+     */
+    private boolean finish(Task<T> task, List<Task<T>> dependents) {
+        if (dependents == null) {
+            return false;
+        }
+        if (journal != null) {
+            journal.finished(task, task.getStatus());
+        }
+        ScheduledHandle deadline = task.getDeadline();
+        if (deadline != null) {
+            deadline.cancel();
+        }
+        for (Task<T> dependent : dependents) {
+            if (dependent.release()) {
+                enqueue(dependent);
+            }
+        }
+        if (task.isScheduled()) {
+            uncountOutstanding();
+        }
+        return true;
+    }
+    
+    /**
+     * Counts a scheduled task until it finishes, unless it already has
+     */
+    private void countOutstanding(Task<T> task) {
+        // Count first, so a racing finish never takes the count below zero
+        outstanding.incrementAndGet();
+        if (!task.markScheduled()) {
+            uncountOutstanding();
+        }
+    }
+    
+    private void uncountOutstanding() {
+        if (outstanding.decrementAndGet() == 0) {
+            synchronized (outstanding) {
+                outstanding.notifyAll();
+            }
+        }
+    }
+    
+    private void enqueue(Task<T> task) {
+        if (priorityMode == PriorityMode.CRITICAL_PATH) {
+            task.setReadyRank(upwardRank(task));
+        }
+        readyQueue.offer(task);
+    }
+    
+    /**
+     * Duration estimate plus the longest rank among the dependents, cached
+     * per task until the graph below it changes or the estimates move (see
+     * TaskStats.getEstimateVersion), so a DAG scheduled before its types
+     * have run is re-ranked once they have. Iterative post-order so long
+     * chains don't overflow the stack.
+     */
+    private double upwardRank(Task<T> root) {
+        long version = stats.getEstimateVersion();
+        Deque<Task<T>> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Task<T> task = stack.peek();
+            if (!Double.isNaN(task.getRank(version))) {
+                stack.pop();
+                continue;
+            }
+            double longest = 0;
+            boolean known = true;
+            for (Task<T> dependent : task.getDependents()) {
+                double rank = dependent.getRank(version);
+                if (Double.isNaN(rank)) {
+                    stack.push(dependent);
+                    known = false;
+                } else {
+                    longest = Math.max(longest, rank);
+                }
+            }
+            if (known) {
+                // Unseen types count as 1ns, which still favours longer chains
+                double estimate = Math.max(1, stats.getEstimatedDurationNanos(task.getType()));
+                task.setRank(estimate + longest, version);
+                stack.pop();
+            }
+        }
+        return root.getRank(version);
+    }
+    
+    /**
+     * A new edge below task lengthens the paths of task and everything
+     * upstream of it, so their cached ranks are dropped
+     */
+    private void invalidateRanks(Task<T> task) {
+        if (priorityMode != PriorityMode.CRITICAL_PATH) {
+            return;
+        }
+        long version = stats.getEstimateVersion();
+        Deque<Task<T>> stack = new ArrayDeque<>();
+        stack.push(task);
+        while (!stack.isEmpty()) {
+            Task<T> next = stack.pop();
+            if (!Double.isNaN(next.getRank(version))) {
+                next.setRank(Double.NaN, version);
+                stack.addAll(next.getDependencies());
+            }
+        }
+    }
+    
+    private static int compareByRank(Task<?> a, Task<?> b) {
+        int byRank = Double.compare(b.getReadyRank(), a.getReadyRank()); // Longest path first
+        if (byRank != 0) {
+            return byRank;
+        }
+        int byPriority = Integer.compare(b.getPriority(), a.getPriority());
+        return byPriority != 0 ? byPriority : Long.compare(a.getId(), b.getId());
+    }
+    
+    private ScheduledHandle addTimer(Runnable action, Runnable onCancel, long delayNanos, long periodNanos) {
+        ScheduledHandle handle = new ScheduledHandle(action, onCancel,
+            System.nanoTime() + Math.max(0, delayNanos), periodNanos, this::cancelTimer);
+        timerLock.lock();
         try {
-            Thread.sleep(100); // Simulate work
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+            handle.node = timerWheel.schedule(handle, toTicks(handle.dueNanos));
+            timerWork.signal();
+        } finally {
+            timerLock.unlock();
         }
+        return handle;
     }
     
-    private void updateDependentTasks(Task<T> completedTask) {
-        dependencyGraph.forEach((task, dependencies) -> {
-            if (dependencies.contains(completedTask) && task.areDependenciesComplete()) {
-                taskQueue.offer(task);
+    private boolean cancelTimer(ScheduledHandle handle) {
+        timerLock.lock();
+        try {
+            if (handle.done) {
+                return false;
             }
-        });
+            handle.done = true;
+            timerWheel.deschedule(handle.node);
+            return true;
+        } finally {
+            timerLock.unlock();
+        }
+    }
+    
+    private long toTicks(long nanos) {
+        return (nanos - epochNanos) >> 10;
+    }
+    
+    private static long ticksToNanos(long ticks) {
+        return ticks << 10;
+    }
+    
+    private void runTimer() {
+        List<ScheduledHandle> due = new ArrayList<>();
+        while (running) {
+            timerLock.lock();
+            try {
+                long now = System.nanoTime();
+                timerWheel.advance(toTicks(now), due::add);
+                for (ScheduledHandle handle : due) {
+                    stats.recordSchedulingLag(now - handle.dueNanos);
+                    if (handle.isRecurring()) {
+                        handle.dueNanos += handle.getPeriodNanos();
+                        handle.node = timerWheel.schedule(handle, toTicks(handle.dueNanos));
+                    } else {
+                        handle.done = true;
+                    }
+                }
+                if (due.isEmpty()) {
+                    // Sleep until the wheel has a bucket to visit; an earlier new timer signals
+                    long delay = timerWheel.getExpirationDelay();
+                    if (delay == Long.MAX_VALUE) {
+                        timerWork.await();
+                    } else {
+                        timerWork.awaitNanos(ticksToNanos(delay));
+                    }
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                timerLock.unlock();
+            }
+            
+            for (ScheduledHandle handle : due) {
+                try {
+                    handle.getAction().run();
+                } catch (RuntimeException e) {
+                    System.err.println("Timer action failed: " + e.getMessage());
+                }
+            }
+            due.clear();
+        }
     }
     
     public TaskStats getStats() {
         return stats;
     }
     
+    /**
+     * Lets workers finish the tasks already released, then stops them.
+     * Timers that have not fired are dropped.
+     */
     public void shutdown() {
+        running = false;
+        timerThread.interrupt();
+        for (int i = 0; i < threadCount; i++) {
+            readyQueue.offer(stopSignal);
+        }
         executor.shutdown();
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,135 @@
+/**
+ * Test cases for TaskScheduler
+ */
+public class TaskSchedulerTest {
+    private TaskScheduler<Integer> scheduler;
+    
+    @BeforeEach
+    void setUp() {
+        scheduler = new TaskScheduler<>(1, data -> {
+            if (data < 0) {
+                throw new AssertionError("processor error");
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(data));
+        });
+        scheduler.start();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+    
+    @Test
+    void testDeadlineBeforeScheduleDoesNotEndAwaitIdleEarly() throws InterruptedException {
+        Task<Integer> expired = new Task<>(0, 1);
+        scheduler.setDeadline(expired, 1, TimeUnit.MILLISECONDS);
+        Thread.sleep(50);
+        assertEquals(TaskStatus.FAILED, expired.getStatus());
+        
+        Task<Integer> slow = new Task<>(200, 1);
+        scheduler.schedule(slow);
+        assertTrue(scheduler.awaitIdle(5, TimeUnit.SECONDS));
+        assertEquals(TaskStatus.COMPLETED, slow.getStatus());
+    }
+    
+    @Test
+    void testScheduleAfterMissedDeadlineDoesNotHang() throws InterruptedException {
+        Task<Integer> expired = new Task<>(0, 1);
+        scheduler.setDeadline(expired, 1, TimeUnit.MILLISECONDS);
+        Thread.sleep(50);
+        scheduler.schedule(expired);
+        
+        assertTrue(scheduler.awaitIdle(5, TimeUnit.SECONDS));
+        assertEquals(TaskStatus.FAILED, expired.getStatus());
+    }
+    
+    @Test
+    void testErrorFailsTaskAndKeepsWorker() throws InterruptedException {
+        Task<Integer> broken = new Task<>(-1, 1);
+        scheduler.schedule(broken);
+        assertTrue(scheduler.awaitIdle(5, TimeUnit.SECONDS));
+        assertEquals(TaskStatus.FAILED, broken.getStatus());
+        
+        // The only worker must still be there to run this
+        Task<Integer> next = new Task<>(0, 1);
+        scheduler.schedule(next);
+        assertTrue(scheduler.awaitIdle(5, TimeUnit.SECONDS));
+        assertEquals(TaskStatus.COMPLETED, next.getStatus());
+    }
+    
+    @Test
+    void testRanksFollowEstimatesLearnedAfterScheduling() throws InterruptedException {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        TaskScheduler<String> critical = new TaskScheduler<>(1, name -> {
+            order.add(name);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(name.startsWith("slow") ? 30 : 1));
+        }, TaskScheduler.PriorityMode.CRITICAL_PATH);
+        
+        // The whole DAG is ranked when the first tasks are enqueued, before
+        // any type has run: a four-task fast chain then outranks one slow task
+        Task<String> warmFast = new Task<>("fast-warm", 1, "fast");
+        Task<String> warmSlow = new Task<>("slow-warm", 1, "slow");
+        Task<String> fork = new Task<>("fork", 1, "fork");
+        critical.addDependency(fork, warmFast);
+        critical.addDependency(fork, warmSlow);
+        Task<String> previous = fork;
+        for (int i = 1; i <= 4; i++) {
+            Task<String> link = new Task<>("fast-" + i, 1, "fast");
+            critical.addDependency(link, previous);
+            critical.schedule(link);
+            previous = link;
+        }
+        Task<String> slow = new Task<>("slow", 1, "slow");
+        critical.addDependency(slow, fork);
+        critical.schedule(slow);
+        critical.schedule(fork);
+        critical.schedule(warmFast);
+        critical.schedule(warmSlow);
+        critical.start();
+        assertTrue(critical.awaitIdle(5, TimeUnit.SECONDS));
+        critical.shutdown();
+        
+        // Once the warm-ups have run, the slow task is the longer path
+        assertTrue(order.indexOf("slow") < order.indexOf("fast-1"), "Run order: " + order);
+    }
+    
+    @Test
+    void testPendingTimerDoesNotPoll() throws InterruptedException {
+        scheduler.schedule(new Task<>(0, 1), 1, TimeUnit.HOURS);
+        Thread.sleep(50);
+        long before = timerCpuNanos();
+        Thread.sleep(500);
+        
+        // Polling every tick costs tens of milliseconds over this time; waiting costs none
+        long spent = timerCpuNanos() - before;
+        assertTrue(spent < TimeUnit.MILLISECONDS.toNanos(5), "timer thread used " + spent + "ns");
+    }
+    
+    @Test
+    void testNearTimerFiresWhileFarTimerWaits() throws InterruptedException {
+        scheduler.schedule(new Task<>(0, 1), 1, TimeUnit.HOURS);
+        Thread.sleep(50);
+        Task<Integer> near = new Task<>(0, 1);
+        long start = System.nanoTime();
+        scheduler.schedule(near, 20, TimeUnit.MILLISECONDS);
+        
+        while (near.getStatus() != TaskStatus.COMPLETED
+                && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5)) {
+            Thread.sleep(1);
+        }
+        assertEquals(TaskStatus.COMPLETED, near.getStatus());
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500), "fired late");
+    }
+    
+    private static long timerCpuNanos() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("task-timer")) {
+                total += Math.max(0, threads.getThreadCpuTime(thread.getId()));
+            }
+        }
+        return total;
+    }
+}
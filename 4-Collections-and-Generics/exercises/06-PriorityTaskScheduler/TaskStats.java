@@ -2,22 +2,78 @@
  * Statistics tracking for task execution
  */
 public class TaskStats {
+    private static final double DURATION_ALPHA = 0.2;
+    private static final double ESTIMATE_DRIFT_FACTOR = 1.5;
+    
     private final AtomicLong scheduledCount;
     private final AtomicLong startedCount;
     private final AtomicLong completedCount;
     private final AtomicLong failedCount;
+    private final AtomicLong cancelledCount;
+    private final AtomicLong deadlineMissedCount;
+    private final LatencyHistogram schedulingLag;
+    private final ConcurrentHashMap<String, Double> durationsByType;
+    private final ConcurrentHashMap<String, Double> publishedEstimates;
+    private final AtomicLong estimateVersion;
     
     public TaskStats() {
         this.scheduledCount = new AtomicLong();
         this.startedCount = new AtomicLong();
         this.completedCount = new AtomicLong();
         this.failedCount = new AtomicLong();
+        this.cancelledCount = new AtomicLong();
+        this.deadlineMissedCount = new AtomicLong();
+        this.schedulingLag = new LatencyHistogram();
+        this.durationsByType = new ConcurrentHashMap<>();
+        this.publishedEstimates = new ConcurrentHashMap<>();
+        this.estimateVersion = new AtomicLong();
     }
     
     public void recordScheduled() { scheduledCount.incrementAndGet(); }
     public void recordStarted() { startedCount.incrementAndGet(); }
     public void recordCompleted() { completedCount.incrementAndGet(); }
     public void recordFailed() { failedCount.incrementAndGet(); }
+    public void recordCancelled() { cancelledCount.incrementAndGet(); }
+    public void recordDeadlineMissed() { deadlineMissedCount.incrementAndGet(); }
+    public void recordSchedulingLag(long nanos) { schedulingLag.record(nanos); }
+    
+    /**
+     * Folds a run time into the type's moving average, weighting recent
+     * runs more so estimates follow drifting workloads
+     */
+    public void recordDuration(String type, long nanos) {
+        double average = durationsByType.merge(type, (double) nanos,
+            (previous, latest) -> previous + DURATION_ALPHA * (latest - previous));
+        Double published = publishedEstimates.get(type);
+        if (published == null || average > published * ESTIMATE_DRIFT_FACTOR
+                || average < published / ESTIMATE_DRIFT_FACTOR) {
+            publishedEstimates.put(type, average);
+            estimateVersion.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Estimated run time of a task of this type, 0 if none has run yet
+     */
+    public double getEstimatedDurationNanos(String type) {
+        return durationsByType.getOrDefault(type, 0.0);
+    }
+    
+    /**
+     * Bumped when a type gets its first estimate, or its estimate has moved
+     * by more than a factor of 1.5 since the last bump for that type; ranks
+     * computed under an older version are stale
+     */
+    public long getEstimateVersion() {
+        return estimateVersion.get();
+    }
+    
+    /**
+     * How late timers fired relative to their due time
+     */
+    public LatencyHistogram getSchedulingLag() { return schedulingLag; }
+    public long getCancelledCount() { return cancelledCount.get(); }
+    public long getDeadlineMissedCount() { return deadlineMissedCount.get(); }
     
     public double getSuccessRate() {
         long total = completedCount.get() + failedCount.get();
@@ -27,9 +83,12 @@ public class TaskStats {
     @Override
     public String toString() {
         return String.format(
-            "TaskStats{scheduled=%d, started=%d, completed=%d, failed=%d, successRate=%.2f}",
+            "TaskStats{scheduled=%d, started=%d, completed=%d, failed=%d, successRate=%.2f, " +
+            "cancelled=%d, deadlinesMissed=%d, lagP50=%dus, lagP99=%dus, lagMax=%dus}",
             scheduledCount.get(), startedCount.get(), completedCount.get(), 
-            failedCount.get(), getSuccessRate()
+            failedCount.get(), getSuccessRate(),
+            cancelledCount.get(), deadlineMissedCount.get(), schedulingLag.getPercentileMicros(0.50),
+            schedulingLag.getPercentileMicros(0.99), schedulingLag.getMaxMicros()
         );
     }
 } 
\ No newline at end of file
@@ -5,7 +5,8 @@ public enum TaskStatus {
     PENDING("Task is waiting to be executed"),
     RUNNING("Task is currently executing"),
     COMPLETED("Task has completed successfully"),
-    FAILED("Task execution failed");
+    FAILED("Task execution failed"),
+    CANCELLED("Task was cancelled before it ran");
     
     private final String description;
     
@@ -0,0 +1,141 @@
+/**
+ * Directory of pipeline checkpoints, one file each. A checkpoint is
+ * written to a temporary file, forced, and then atomically renamed into
+ * place, so a crash never leaves a partial one behind. Only the latest
+ * few are kept.
+ *
+ * File layout: [long id][long sourceOffset][long outputPosition]
+ * [int stages] then per stage [int index][int length][state bytes].
+ */
+public class CheckpointStore {
+    private static final String PREFIX = "checkpoint-";
+    private static final int RETAINED = 2;
+    
+    private final Path directory;
+    
+    public CheckpointStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+    
+    public void save(Checkpoint checkpoint) throws IOException {
+        Path temporary = directory.resolve(PREFIX + "tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeLong(checkpoint.id);
+            out.writeLong(checkpoint.sourceOffset);
+            out.writeLong(checkpoint.outputPosition);
+            out.writeInt(checkpoint.stageStates.size());
+            for (Map.Entry<Integer, byte[]> state : checkpoint.stageStates.entrySet()) {
+                out.writeInt(state.getKey());
+                out.writeInt(state.getValue().length);
+                out.write(state.getValue());
+            }
+            out.flush();
+            channel.force(false);
+        }
+        Files.move(temporary, directory.resolve(fileName(checkpoint.id)), StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+        
+        List<Long> ids = ids();
+        for (int i = 0; i < ids.size() - RETAINED; i++) {
+            Files.deleteIfExists(directory.resolve(fileName(ids.get(i))));
+        }
+    }
+    
+    /**
+     * The newest checkpoint, or null if there is none
+     */
+    public Checkpoint latest() throws IOException {
+        List<Long> ids = ids();
+        if (ids.isEmpty()) {
+            return null;
+        }
+        Path file = directory.resolve(fileName(ids.get(ids.size() - 1)));
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            long id = in.readLong();
+            long sourceOffset = in.readLong();
+            long outputPosition = in.readLong();
+            Map<Integer, byte[]> stageStates = new HashMap<>();
+            int stages = in.readInt();
+            for (int i = 0; i < stages; i++) {
+                int index = in.readInt();
+                byte[] state = new byte[in.readInt()];
+                in.readFully(state);
+                stageStates.put(index, state);
+            }
+            return new Checkpoint(id, sourceOffset, outputPosition, stageStates);
+        }
+    }
+    
+    /**
+     * Removes every checkpoint, so the next run starts from scratch
+     */
+    public void clear() throws IOException {
+        for (long id : ids()) {
+            Files.deleteIfExists(directory.resolve(fileName(id)));
+        }
+    }
+    
+    static byte[] encode(Serializable state) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(state);
+        }
+        return bytes.toByteArray();
+    }
+    
+    static Serializable decode(byte[] bytes) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (Serializable) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+    
+    private List<Long> ids() throws IOException {
+        List<Long> ids = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*")) {
+            for (Path file : files) {
+                String suffix = file.getFileName().toString().substring(PREFIX.length());
+                if (suffix.chars().allMatch(Character::isDigit)) {
+                    ids.add(Long.parseLong(suffix));
+                }
+            }
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+    
+    private static String fileName(long id) {
+        return PREFIX + id;
+    }
+    
+    /**
+     * A consistent cut of a run: how far the source had been read, how many
+     * results the sink had been given, and the state of each stateful
+     * stage, all as of the same barrier
+     */
+    public static final class Checkpoint {
+        private final long id;
+        private final long sourceOffset;
+        private final long outputPosition;
+        private final Map<Integer, byte[]> stageStates;
+        
+        Checkpoint(long id, long sourceOffset, long outputPosition, Map<Integer, byte[]> stageStates) {
+            this.id = id;
+            this.sourceOffset = sourceOffset;
+            this.outputPosition = outputPosition;
+            this.stageStates = stageStates;
+        }
+        
+        public long getId() { return id; }
+        public long getSourceOffset() { return sourceOffset; }
+        public long getOutputPosition() { return outputPosition; }
+        
+        /**
+         * Serialized state by the stage's position in the pipeline
+         */
+        Map<Integer, byte[]> getStageStates() { return stageStates; }
+    }
+}
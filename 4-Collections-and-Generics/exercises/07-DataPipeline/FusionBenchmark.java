@@ -0,0 +1,61 @@
+/**
+ * Measures what stage fusion and micro-batching save on a chain of cheap
+ * transforms. The same ten-stage chain runs in three setups, in turn: one
+ * item per handoff without fusion (every item crosses every queue alone),
+ * batched handoffs without fusion, and batched with fusion. Median rates
+ * are compared.
+ *
+ * Usage: java FusionBenchmark [items] [stages] [rounds] [batchSize]
+ */
+public class FusionBenchmark {
+    public static void main(String[] args) {
+        int items = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int stages = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int batchSize = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+        
+        List<Long> input = new ArrayList<>(items);
+        for (long i = 0; i < items; i++) {
+            input.add(i);
+        }
+        
+        run(input, stages, 1, false); // warm-up
+        run(input, stages, batchSize, true);
+        double[] single = new double[rounds];
+        double[] batched = new double[rounds];
+        double[] fused = new double[rounds];
+        for (int round = 0; round < rounds; round++) {
+            single[round] = run(input, stages, 1, false);
+            batched[round] = run(input, stages, batchSize, false);
+            fused[round] = run(input, stages, batchSize, true);
+            System.out.printf("round %d: single=%.0f items/s batched=%.0f items/s fused=%.0f items/s%n",
+                round + 1, single[round], batched[round], fused[round]);
+        }
+        Arrays.sort(single);
+        Arrays.sort(batched);
+        Arrays.sort(fused);
+        double singleMedian = single[rounds / 2];
+        System.out.printf("median: single=%.0f items/s batched=%.0f items/s (%.1fx) fused=%.0f items/s (%.1fx)%n",
+            singleMedian, batched[rounds / 2], batched[rounds / 2] / singleMedian,
+            fused[rounds / 2], fused[rounds / 2] / singleMedian);
+    }
+    
+    /**
+     * @return items per second through the whole chain
+     */
+    private static double run(List<Long> input, int stages, int batchSize, boolean fusion) {
+        Pipeline<Long, Long> pipeline = new Pipeline<Long, Long>(1024, 1, batchSize).setFusion(fusion);
+        for (int i = 0; i < stages; i++) {
+            pipeline.addStage(new TransformStage<Long, Long>(x -> x + 1));
+        }
+        
+        long start = System.nanoTime();
+        List<Long> output = pipeline.process(input);
+        long elapsed = System.nanoTime() - start;
+        pipeline.shutdown();
+        if (output.size() != input.size()) {
+            throw new IllegalStateException("Lost items: " + output.size() + " of " + input.size());
+        }
+        return input.size() * 1e9 / elapsed;
+    }
+}
@@ -0,0 +1,14 @@
+/**
+ * Output of a checkpointed run. A resumed run writes again, at the same
+ * positions, the results that came after the last checkpoint, so writing
+ * a position that was already written must replace it, not add to it.
+ */
+public interface IdempotentSink<O> {
+    void write(long position, O result) throws IOException;
+    
+    /**
+     * Makes everything written so far durable; called before each checkpoint
+     */
+    default void flush() throws IOException {
+    }
+}
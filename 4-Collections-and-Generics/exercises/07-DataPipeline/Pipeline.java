@@ -1,77 +1,401 @@
 /**
- * Generic data processing pipeline
+ * Generic data processing pipeline.
+ *
+ * A run streams: a source worker feeds the first stage, every stage runs
+ * continuously on its own workers, and neighbouring stages are joined by
+ * bounded queues. A full queue blocks the stage before it, so a slow stage
+ * holds back everything upstream down to the source, and a run over an
+ * unbounded input never holds more than about bufferSize items per stage.
+ * When the source is exhausted an end-of-stream marker follows the last
+ * item through every queue.
+ *
+ * Items cross the queues in batches of up to batchSize, so a queue handoff
+ * is paid per batch rather than per item. The source only waits to fill a
+ * batch while the first stage is busy; when it is idle a partial batch goes
+ * at once. Before a run, adjacent plain TransformStages are fused into one
+ * stage, so a chain of cheap transforms runs on one thread with no
+ * handoffs between them at all.
+ *
+ * Each stage has its own number of workers, so a heavy stage can be given
+ * more. Several workers may finish batches out of order; in ordered mode
+ * every batch carries a sequence number and a reorder buffer behind each
+ * stage restores input order before passing batches on.
+ *
+ * With auto-tuning on, a tuner thread rebalances workers between stages
+ * during a run, within a thread budget; see Tuner. A stage's declared
+ * parallelism is a floor, and only stages added as scalable, which must
+ * tolerate running on any number of threads at once, get more workers.
+ *
+ * A checkpointed run (runCheckpointed) periodically sends a barrier down
+ * the pipeline behind the last item read from the source. Each stage
+ * aligns on it, letting all its workers finish the work in front of the
+ * barrier, snapshots its state if it has any, and passes the barrier on.
+ * When the barrier reaches the sink the snapshots, the source offset and
+ * the sink position form a consistent checkpoint (Chandy-Lamport on a
+ * chain of FIFO channels), which a restarted run resumes from.
  */
 public class Pipeline<I, O> {
-    private final List<Stage<?, ?>> stages;
+    private static final int DEFAULT_BATCH_SIZE = 64;
+    private static final long DEFAULT_TUNING_INTERVAL_MILLIS = 100;
+    
+    // End-of-stream marker; never a real batch
+    private static final Object END = new Object();
+    
+    private final List<StageSpec> stages;
     private final PipelineStats stats;
     private final int bufferSize;
+    private final int workersPerStage;
+    private final int batchSize;
     private final ExecutorService executor;
+    private volatile boolean fusion;
+    private volatile boolean ordered;
+    private volatile int threadBudget;
+    private volatile long tuningIntervalNanos;
     
+    /**
+     * @param threadCount workers for each stage added without its own
+     *        parallelism
+     */
     public Pipeline(int bufferSize, int threadCount) {
+        this(bufferSize, threadCount, DEFAULT_BATCH_SIZE);
+    }
+    
+    /**
+     * @param batchSize most items moved between stages at once; capped at
+     *        bufferSize, and 1 hands items over one at a time
+     */
+    public Pipeline(int bufferSize, int threadCount, int batchSize) {
         this.stages = new ArrayList<>();
         this.stats = new PipelineStats();
         this.bufferSize = bufferSize;
-        this.executor = Executors.newFixedThreadPool(threadCount);
+        this.workersPerStage = threadCount;
+        this.batchSize = Math.max(1, Math.min(batchSize, bufferSize));
+        this.fusion = true;
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "pipeline-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
     
     public <T> Pipeline<I, O> addStage(Stage<?, T> stage) {
-        stages.add(stage);
+        return addStage(stage, workersPerStage);
+    }
+    
+    /**
+     * Adds a stage run by exactly the given number of workers
+     */
+    public <T> Pipeline<I, O> addStage(Stage<?, T> stage, int parallelism) {
+        return addStage(stage, parallelism, false);
+    }
+    
+    /**
+     * Adds a stage run by at least the given number of workers. A scalable
+     * stage may be given more by the auto-tuner, so it must be safe to run
+     * on any number of threads; a StatefulStage never is.
+     */
+    public <T> Pipeline<I, O> addStage(Stage<?, T> stage, int parallelism, boolean scalable) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        if (scalable && stage instanceof StatefulStage) {
+            throw new IllegalArgumentException("A stateful stage can't be scalable: its snapshots "
+                + "assume the workers it was declared with");
+        }
+        stages.add(new StageSpec(stage, parallelism, scalable, stages.size()));
         return this;
     }
     
-    @SuppressWarnings("unchecked")
+    /**
+     * Turns stage fusion on or off for later runs; on by default
+     */
+    public Pipeline<I, O> setFusion(boolean fusion) {
+        this.fusion = fusion;
+        return this;
+    }
+    
+    /**
+     * Keeps results in input order for later runs, even through stages
+     * with several workers; off by default
+     */
+    public Pipeline<I, O> setOrdered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+    
+    /**
+     * Lets later runs move workers to scalable stages as the load shifts,
+     * keeping at most threadBudget stage workers; 0 turns tuning off. No
+     * stage ever drops below the parallelism it was added with.
+     */
+    public Pipeline<I, O> setAutoTuning(int threadBudget) {
+        return setAutoTuning(threadBudget, DEFAULT_TUNING_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Like setAutoTuning(threadBudget), rebalancing at most once per interval
+     */
+    public Pipeline<I, O> setAutoTuning(int threadBudget, long interval, TimeUnit unit) {
+        if (threadBudget < 0) {
+            throw new IllegalArgumentException("Thread budget must not be negative: " + threadBudget);
+        }
+        this.threadBudget = threadBudget;
+        this.tuningIntervalNanos = unit.toNanos(interval);
+        return this;
+    }
+    
+    /**
+     * Runs the whole input through the pipeline and returns the results
+     */
     public List<O> process(List<I> input) {
-        BlockingQueue<Object> currentBuffer = new ArrayBlockingQueue<>(bufferSize);
-        
-        // Add input to first buffer
-        input.forEach(item -> {
-            try {
-                currentBuffer.put(item);
-                stats.recordInput();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+        List<O> results = new ArrayList<>();
+        try (Results run = stream(input.iterator())) {
+            run.forEachRemaining(results::add);
+        }
+        return results;
+    }
+    
+    /**
+     * Starts a run over the source and returns its results as they come
+     * out of the last stage. The source is read on a worker thread, only as
+     * fast as the pipeline drains. Close the results to stop a run early.
+     */
+    public Results stream(Iterator<I> source) {
+        return start(source, ordered, 0, 0, 0);
+    }
+    
+    /**
+     * Runs the source into the sink, checkpointing to the store about once
+     * per interval and once more at the end. If the store already holds a
+     * checkpoint, stateful stages get their state back and the run resumes
+     * from it: the source is opened at the saved offset and results are
+     * written from the saved sink position on. Results after the last
+     * checkpoint are written again, at the same positions, which is why
+     * the sink must be idempotent; given deterministic stages the sink
+     * ends up with each result exactly once. The run is always ordered, so
+     * results land at the same positions however many workers a stage has.
+     * A store whose last checkpoint was taken at the end of the input
+     * gives an empty run; clear it to start over.
+     *
+     * @return number of results written by this call
+     */
+    public long runCheckpointed(ReplayableSource<I> source, IdempotentSink<O> sink, CheckpointStore store,
+                                long interval, TimeUnit unit) throws IOException {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive: " + interval);
+        }
+        CheckpointStore.Checkpoint last = store.latest();
+        long sourceOffset = 0;
+        long firstPosition = 0;
+        long nextId = 1;
+        if (last != null) {
+            sourceOffset = last.getSourceOffset();
+            firstPosition = last.getOutputPosition();
+            nextId = last.getId() + 1;
+            for (StageSpec spec : stages) {
+                byte[] state = last.getStageStates().get(spec.position);
+                if (state != null && spec.stage instanceof StatefulStage) {
+                    ((StatefulStage<?, ?>) spec.stage).restoreState(CheckpointStore.decode(state));
+                }
             }
-        });
-        
-        // Process through stages
-        for (Stage<?, ?> stage : stages) {
-            BlockingQueue<Object> nextBuffer = new ArrayBlockingQueue<>(bufferSize);
-            CompletableFuture.runAsync(() -> 
-                processStage(stage, currentBuffer, nextBuffer), executor);
-            currentBuffer = nextBuffer;
         }
         
-        // Collect results
-        List<O> results = new ArrayList<>();
-        while (!currentBuffer.isEmpty()) {
-            results.add((O) currentBuffer.poll());
-            stats.recordOutput();
+        AtomicLong position = new AtomicLong(firstPosition);
+        try (Results results = start(source.open(sourceOffset), true, sourceOffset, nextId, unit.toNanos(interval))) {
+            results.onBarrier = barrier -> {
+                try {
+                    sink.flush();
+                    store.save(new CheckpointStore.Checkpoint(
+                        barrier.id, barrier.sourceOffset, position.get(), barrier.stageStates));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+            while (results.hasNext()) {
+                sink.write(position.get(), results.next());
+                position.incrementAndGet();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return position.get() - firstPosition;
+    }
+    
+    /**
+     * Starts a run. With a barrier interval, the source is taken to start
+     * at sourceOffset and barriers are numbered from firstBarrierId.
+     */
+    private Results start(Iterator<I> source, boolean ordered, long sourceOffset,
+                          long firstBarrierId, long barrierIntervalNanos) {
+        int capacity = Math.max(1, bufferSize / batchSize);
+        int budget = threadBudget;
+        BlockingQueue<Object> input = new ArrayBlockingQueue<>(capacity);
+        BlockingQueue<Object> current = input;
+        List<StageRun> runs = new ArrayList<>();
+        for (StageSpec spec : fusion ? fuse(stages) : stages) {
+            BlockingQueue<Object> next = new ArrayBlockingQueue<>(capacity);
+            StageRun run = new StageRun(runs.size(), spec, current, next);
+            if (ordered) {
+                run.reorder = new ReorderBuffer(next, 2 * Math.max(spec.parallelism, budget));
+            }
+            runs.add(run);
+            current = next;
         }
+        stats.registerStages(runs.stream().map(run -> run.stats).collect(Collectors.toList()));
         
+        Results results = new Results(current);
+        results.submit(() -> feed(source, input, sourceOffset, firstBarrierId, barrierIntervalNanos));
+        for (StageRun run : runs) {
+            for (int i = 0; i < run.spec.parallelism; i++) {
+                results.submit(() -> runStage(run));
+            }
+        }
+        if (budget > 0 && !runs.isEmpty()) {
+            results.submit(new Tuner(runs, results, budget, tuningIntervalNanos));
+        }
         return results;
     }
     
+    /**
+     * Publishes the results of a run over the source to each subscriber,
+     * as fast as the subscriber requests them
+     */
+    public Flow.Publisher<O> publisher(Iterable<I> source) {
+        return subscriber -> new ResultSubscription(subscriber, stream(source.iterator())).start();
+    }
+    
+    /**
+     * Replaces each run of adjacent plain TransformStages that have the
+     * same parallelism and scalability with their composition. Subclasses
+     * are left alone, since they may keep state or handle errors their own
+     * way.
+     */
     @SuppressWarnings("unchecked")
-    private <IN, OUT> void processStage(Stage<IN, OUT> stage, 
-                                      BlockingQueue<Object> input,
-                                      BlockingQueue<Object> output) {
-        while (!input.isEmpty()) {
+    private static List<StageSpec> fuse(List<StageSpec> stages) {
+        List<StageSpec> fused = new ArrayList<>();
+        for (StageSpec spec : stages) {
+            int last = fused.size() - 1;
+            if (last >= 0 && fused.get(last).parallelism == spec.parallelism
+                    && fused.get(last).scalable == spec.scalable
+                    && isFusable(fused.get(last).stage) && isFusable(spec.stage)) {
+                TransformStage<Object, Object> previous = (TransformStage<Object, Object>) fused.get(last).stage;
+                fused.set(last, new StageSpec(previous.andThen((TransformStage<Object, Object>) spec.stage),
+                    spec.parallelism, spec.scalable, -1));
+            } else {
+                fused.add(spec);
+            }
+        }
+        return fused;
+    }
+    
+    private static boolean isFusable(Stage<?, ?> stage) {
+        return stage.getClass() == TransformStage.class;
+    }
+    
+    /**
+     * Reads the source into batches. With a barrier interval, a barrier
+     * follows the first batch sent after each interval, and a last one
+     * follows the final batch.
+     */
+    private void feed(Iterator<I> source, BlockingQueue<Object> output, long offset,
+                      long barrierId, long barrierIntervalNanos) {
+        try {
             try {
-                IN item = (IN) input.take();
-                try {
-                    OUT result = stage.process(item);
-                    if (result != null) {
-                        output.put(result);
-                        stats.recordProcessed();
+                Object[] batch = new Object[batchSize];
+                int size = 0;
+                long sequence = 0;
+                long nextBarrier = System.nanoTime() + barrierIntervalNanos;
+                while (source.hasNext()) {
+                    batch[size++] = source.next();
+                    if (size == batchSize || output.isEmpty()) {
+                        output.put(new Batch(sequence++, size == batchSize ? batch : Arrays.copyOf(batch, size)));
+                        stats.recordInput(size);
+                        offset += size;
+                        batch = new Object[batchSize];
+                        size = 0;
+                        if (barrierIntervalNanos > 0 && System.nanoTime() - nextBarrier >= 0) {
+                            output.put(new Barrier(barrierId++, offset));
+                            nextBarrier = System.nanoTime() + barrierIntervalNanos;
+                        }
                     }
-                } catch (Exception e) {
-                    stats.recordError();
-                    stage.handleError(item, e);
                 }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
+                if (size > 0) {
+                    output.put(new Batch(sequence, Arrays.copyOf(batch, size)));
+                    stats.recordInput(size);
+                    offset += size;
+                }
+                if (barrierIntervalNanos > 0) {
+                    output.put(new Barrier(barrierId, offset));
+                }
+                output.put(END);
+            } catch (RuntimeException e) {
+                output.put(new Failure(e));
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // run closed
+        }
+    }
+    
+    /**
+     * One worker of a stage. In ordered mode every batch taken goes to the
+     * reorder buffer, even if the stage dropped all its items, so the
+     * buffer sees each sequence number. Between batches the worker quits
+     * if the tuner asked the stage to give one up.
+     */
+    @SuppressWarnings("unchecked")
+    private <IN, OUT> void runStage(StageRun run) {
+        Stage<IN, OUT> stage = (Stage<IN, OUT>) run.spec.stage;
+        BlockingQueue<Object> input = run.input;
+        BlockingQueue<Object> output = run.output;
+        StageStats stageStats = run.stats;
+        ReorderBuffer reorder = run.reorder;
+        long started = System.nanoTime();
+        stageStats.recordWorkerStart(started);
+        try {
+            try {
+                while (!run.tryRetire()) {
+                    Object item = run.take();
+                    if (item == END || item instanceof Failure) {
+                        input.put(item); // for this stage's other workers
+                        if (run.running.decrementAndGet() == 0) {
+                            output.put(item);
+                        }
+                        return;
+                    }
+                    Batch batch = (Batch) item;
+                    long batchStart = System.nanoTime();
+                    Object[] results = new Object[batch.items.length];
+                    int size = 0;
+                    for (Object element : batch.items) {
+                        OUT result;
+                        try {
+                            result = stage.process((IN) element);
+                        } catch (Exception e) {
+                            stats.recordError();
+                            stage.handleError((IN) element, e);
+                            continue;
+                        }
+                        if (result != null) {
+                            results[size++] = result;
+                        }
+                    }
+                    stageStats.recordBatch(batch.items.length, System.nanoTime() - batchStart);
+                    stats.recordProcessed(size);
+                    Object[] kept = size == results.length ? results : Arrays.copyOf(results, size);
+                    if (reorder != null) {
+                        reorder.put(batch.sequence, kept);
+                    } else if (size > 0) {
+                        output.put(new Batch(batch.sequence, kept));
+                    }
+                }
+                run.retired();
+            } catch (RuntimeException e) {
+                output.put(new Failure(e)); // e.g. from handleError
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // run closed
+        } finally {
+            stageStats.recordWorkerStop(started, System.nanoTime());
         }
     }
     
@@ -82,4 +406,504 @@ public class Pipeline<I, O> {
     public void shutdown() {
         executor.shutdown();
     }
-} 
\ No newline at end of file
+    
+    private static final class StageSpec {
+        final Stage<?, ?> stage;
+        final int parallelism; // at start, and the least the tuner leaves
+        final boolean scalable; // whether the tuner may add workers
+        final int position; // in the order added; -1 for a fused stage
+        
+        StageSpec(Stage<?, ?> stage, int parallelism, boolean scalable, int position) {
+            this.stage = stage;
+            this.parallelism = parallelism;
+            this.scalable = scalable;
+            this.position = position;
+        }
+        
+        /**
+         * The stage's class name, or for an anonymous class or a lambda
+         * the name of what it extends or implements
+         */
+        String name() {
+            Class<?> type = stage.getClass();
+            if (type.isAnonymousClass() || type.isSynthetic()) {
+                type = type.getSuperclass() != Object.class ? type.getSuperclass() : type.getInterfaces()[0];
+            }
+            return type.getSimpleName();
+        }
+    }
+    
+    /**
+     * One stage's part in a run: its queues, and how many workers it has
+     */
+    private static final class StageRun {
+        final int index;
+        final StageSpec spec;
+        final BlockingQueue<Object> input;
+        final BlockingQueue<Object> output;
+        final StageStats stats;
+        final AtomicInteger running;
+        final AtomicInteger retiring;
+        final ReentrantLock takeLock;
+        final Condition barrierPassed;
+        ReorderBuffer reorder;
+        private Barrier barrier;
+        private int arrived;
+        
+        StageRun(int index, StageSpec spec, BlockingQueue<Object> input, BlockingQueue<Object> output) {
+            this.index = index;
+            this.spec = spec;
+            this.input = input;
+            this.output = output;
+            this.stats = new StageStats(
+                index + ":" + spec.name(), spec.parallelism, input::size);
+            this.running = new AtomicInteger(spec.parallelism);
+            this.retiring = new AtomicInteger();
+            this.takeLock = new ReentrantLock();
+            this.barrierPassed = takeLock.newCondition();
+        }
+        
+        /**
+         * Takes the next batch or end marker for a worker. Barriers are not
+         * handed out: the worker that takes one, and every other worker as
+         * it comes back for more, waits here until the whole stage has
+         * arrived. By then all work in front of the barrier has been passed
+         * on and none behind it has started, so the last worker to arrive
+         * snapshots the stage and forwards the barrier.
+         */
+        Object take() throws InterruptedException {
+            takeLock.lockInterruptibly();
+            try {
+                while (true) {
+                    if (barrier == null) {
+                        Object item = input.take();
+                        if (!(item instanceof Barrier)) {
+                            return item;
+                        }
+                        barrier = (Barrier) item;
+                        arrived = 0;
+                    }
+                    Barrier waitingFor = barrier;
+                    arrived++;
+                    if (!passBarrierIfAligned()) {
+                        while (barrier == waitingFor) {
+                            barrierPassed.await();
+                        }
+                    }
+                }
+            } finally {
+                takeLock.unlock();
+            }
+        }
+        
+        /**
+         * Called by a worker that has retired, which may leave every
+         * remaining worker waiting at a barrier
+         */
+        void retired() throws InterruptedException {
+            takeLock.lockInterruptibly();
+            try {
+                passBarrierIfAligned();
+            } finally {
+                takeLock.unlock();
+            }
+        }
+        
+        private boolean passBarrierIfAligned() throws InterruptedException {
+            if (barrier == null || arrived < running.get()) {
+                return false;
+            }
+            if (spec.stage instanceof StatefulStage) {
+                try {
+                    barrier.stageStates.put(spec.position,
+                        CheckpointStore.encode(((StatefulStage<?, ?>) spec.stage).snapshotState()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Can't snapshot " + stats.getName(), e);
+                }
+            }
+            output.put(barrier);
+            barrier = null;
+            barrierPassed.signalAll();
+            return true;
+        }
+        
+        /**
+         * Workers the stage will have once pending retirements are done
+         */
+        int workers() {
+            return running.get() - retiring.get();
+        }
+        
+        /**
+         * Counts one more worker, unless the stage has already finished
+         */
+        boolean addWorker() {
+            return running.getAndUpdate(count -> count > 0 ? count + 1 : count) > 0;
+        }
+        
+        /**
+         * Takes up a retirement request for the calling worker. Never
+         * retires the last worker, which has to pass the end marker on.
+         */
+        boolean tryRetire() {
+            if (retiring.get() == 0 || retiring.getAndUpdate(count -> count > 0 ? count - 1 : count) == 0) {
+                return false;
+            }
+            return running.getAndUpdate(count -> count > 1 ? count - 1 : count) > 1;
+        }
+    }
+    
+    /**
+     * Rebalances the workers of one run within the thread budget.
+     *
+     * Each interval it measures w, the busy time a stage spent per item
+     * that entered the first stage. By Little's law a stage that is to keep
+     * up with a throughput of X items per second needs X * w workers busy,
+     * so with B threads the highest sustainable X is B / sum(w) and each
+     * stage's share is B * w / sum(w). One worker moves per interval toward
+     * those shares: to the scalable stage furthest below its share, provided
+     * batches are queued in front of it, either from spare budget or from
+     * the stage furthest above its share that has workers beyond its
+     * declared parallelism. Every move is logged in PipelineStats.
+     */
+    private final class Tuner implements Runnable {
+        private final List<StageRun> runs;
+        private final Results results;
+        private final int budget;
+        private final long intervalNanos;
+        private final long[] lastBusy;
+        private long lastItems;
+        
+        Tuner(List<StageRun> runs, Results results, int budget, long intervalNanos) {
+            this.runs = runs;
+            this.results = results;
+            this.budget = budget;
+            this.intervalNanos = intervalNanos;
+            this.lastBusy = new long[runs.size()];
+        }
+        
+        @Override
+        public void run() {
+            StageRun last = runs.get(runs.size() - 1);
+            try {
+                while (last.running.get() > 0) {
+                    TimeUnit.NANOSECONDS.sleep(intervalNanos);
+                    rebalance();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // run closed
+            }
+        }
+        
+        private void rebalance() {
+            long items = runs.get(0).stats.getItemCount();
+            long arrived = items - lastItems;
+            lastItems = items;
+            double[] work = new double[runs.size()];
+            double totalWork = 0;
+            for (int i = 0; i < runs.size(); i++) {
+                long busy = runs.get(i).stats.getBusyNanos();
+                work[i] = arrived == 0 ? 0 : (double) (busy - lastBusy[i]) / arrived;
+                lastBusy[i] = busy;
+                totalWork += work[i];
+            }
+            if (totalWork == 0) {
+                return; // nothing went through, so nothing to go on
+            }
+            
+            StageRun needy = null;
+            double needyGap = 0;
+            StageRun spare = null;
+            double spareGap = 0;
+            int used = 0;
+            for (int i = 0; i < runs.size(); i++) {
+                StageRun run = runs.get(i);
+                int workers = run.workers();
+                used += workers;
+                double share = Math.max(1, budget * work[i] / totalWork);
+                if (run.spec.scalable && share - workers >= 1 && run.input.size() > 0
+                        && share - workers > needyGap) {
+                    needy = run;
+                    needyGap = share - workers;
+                }
+                if (workers - share >= 1 && workers > run.spec.parallelism && workers - share > spareGap) {
+                    spare = run;
+                    spareGap = workers - share;
+                }
+            }
+            if (needy == null || (used >= budget && spare == null)) {
+                return;
+            }
+            
+            String from = "spare budget";
+            if (used >= budget) {
+                spare.retiring.incrementAndGet();
+                spare.stats.setWorkers(spare.workers());
+                from = spare.stats.getName() + " (now " + spare.workers() + ")";
+            }
+            StageRun target = needy;
+            if (target.addWorker()) {
+                results.submit(() -> runStage(target));
+                target.stats.setWorkers(target.workers());
+            }
+            stats.recordTuning(String.format("worker from %s to %s (now %d); work per item %s",
+                from, needy.stats.getName(), needy.workers(), describe(work)));
+        }
+        
+        private String describe(double[] work) {
+            StringBuilder description = new StringBuilder();
+            for (int i = 0; i < work.length; i++) {
+                description.append(i == 0 ? "" : ", ").append(String.format("%.0fns", work[i]));
+            }
+            return description.toString();
+        }
+    }
+    
+    /**
+     * Marks a checkpoint in the stream; collects stage snapshots on its way
+     * to the sink
+     */
+    private static final class Barrier {
+        final long id;
+        final long sourceOffset;
+        final Map<Integer, byte[]> stageStates;
+        
+        Barrier(long id, long sourceOffset) {
+            this.id = id;
+            this.sourceOffset = sourceOffset;
+            this.stageStates = new HashMap<>();
+        }
+    }
+    
+    /**
+     * Items moving between stages together, numbered in source order
+     */
+    private static final class Batch {
+        final long sequence;
+        final Object[] items;
+        
+        Batch(long sequence, Object[] items) {
+            this.sequence = sequence;
+            this.items = items;
+        }
+    }
+    
+    /**
+     * Passes one stage's batches on in sequence order. Batches the stage
+     * emptied are skipped and the rest renumbered, so the next stage sees
+     * an unbroken sequence again. A worker that gets a window's length
+     * ahead of the oldest batch still in progress waits, which bounds what
+     * the buffer holds.
+     */
+    private static final class ReorderBuffer {
+        private final BlockingQueue<Object> output;
+        private final int window;
+        private final Map<Long, Object[]> pending;
+        private long nextIn;
+        private long nextOut;
+        
+        ReorderBuffer(BlockingQueue<Object> output, int window) {
+            this.output = output;
+            this.window = window;
+            this.pending = new HashMap<>();
+        }
+        
+        synchronized void put(long sequence, Object[] items) throws InterruptedException {
+            while (sequence - nextIn >= window) {
+                wait();
+            }
+            pending.put(sequence, items);
+            Object[] ready;
+            while ((ready = pending.remove(nextIn)) != null) {
+                nextIn++;
+                if (ready.length > 0) {
+                    output.put(new Batch(nextOut++, ready));
+                }
+            }
+            notifyAll();
+        }
+    }
+    
+    /**
+     * Carries an exception that ended the run down to the consumer
+     */
+    private static final class Failure {
+        final RuntimeException cause;
+        
+        Failure(RuntimeException cause) {
+            this.cause = cause;
+        }
+    }
+    
+    /**
+     * Blocking iterator over the output of one run
+     */
+    public final class Results implements Iterator<O>, AutoCloseable {
+        private final BlockingQueue<Object> output;
+        private final List<Future<?>> workers;
+        private volatile boolean closed;
+        private Consumer<Barrier> onBarrier;
+        private Object[] batch;
+        private int index;
+        private boolean done;
+        
+        private Results(BlockingQueue<Object> output) {
+            this.output = output;
+            this.workers = new ArrayList<>();
+        }
+        
+        /**
+         * Starts a worker for this run, unless the run is already closed
+         */
+        private synchronized void submit(Runnable worker) {
+            if (!closed) {
+                workers.add(executor.submit(worker));
+            }
+        }
+        
+        /**
+         * Waits for the next result or the end of the run
+         *
+         * @throws PipelineException if the source or a stage failed
+         */
+        @Override
+        public boolean hasNext() {
+            if (done || closed) {
+                return false;
+            }
+            if (batch != null && index < batch.length) {
+                return true;
+            }
+            Object item;
+            try {
+                item = output.take();
+                while (item instanceof Barrier) {
+                    onBarrier.accept((Barrier) item);
+                    item = output.take();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PipelineException("Interrupted waiting for results", e);
+            }
+            if (closed || item == END) {
+                done = true;
+                close(); // stops the tuner, if any
+                return false;
+            }
+            if (item instanceof Failure) {
+                done = true;
+                close();
+                throw new PipelineException("Pipeline run failed", ((Failure) item).cause);
+            }
+            batch = ((Batch) item).items;
+            index = 0;
+            return true;
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public O next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            O result = (O) batch[index];
+            batch[index++] = null;
+            stats.recordOutput();
+            return result;
+        }
+        
+        /**
+         * Stops the run's workers and ends the iteration
+         */
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                for (Future<?> worker : workers) {
+                    worker.cancel(true);
+                }
+            }
+            output.offer(END); // wakes a consumer blocked in hasNext
+        }
+    }
+    
+    /**
+     * Delivers one run to a Flow subscriber on a worker thread, never
+     * ahead of its demand
+     */
+    private final class ResultSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super O> subscriber;
+        private final Results results;
+        private long demand;
+        private boolean badRequest;
+        private volatile boolean cancelled;
+        
+        ResultSubscription(Flow.Subscriber<? super O> subscriber, Results results) {
+            this.subscriber = subscriber;
+            this.results = results;
+        }
+        
+        void start() {
+            subscriber.onSubscribe(this);
+            executor.execute(this::deliver);
+        }
+        
+        @Override
+        public synchronized void request(long n) {
+            if (n <= 0) {
+                badRequest = true;
+            } else {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            }
+            notifyAll();
+        }
+        
+        @Override
+        public void cancel() {
+            cancelled = true;
+            results.close();
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+        
+        private void deliver() {
+            try {
+                while (true) {
+                    synchronized (this) {
+                        while (demand == 0 && !badRequest && !cancelled) {
+                            wait();
+                        }
+                        if (cancelled) {
+                            return;
+                        }
+                        if (badRequest) {
+                            results.close();
+                            subscriber.onError(new IllegalArgumentException("Request must be positive"));
+                            return;
+                        }
+                        if (demand != Long.MAX_VALUE) {
+                            demand--;
+                        }
+                    }
+                    if (!results.hasNext()) {
+                        if (!cancelled) {
+                            subscriber.onComplete();
+                        }
+                        return;
+                    }
+                    subscriber.onNext(results.next());
+                }
+            } catch (PipelineException e) {
+                if (!cancelled) {
+                    subscriber.onError(e.getCause() != null ? e.getCause() : e);
+                }
+            } catch (InterruptedException e) {
+                results.close();
+            }
+        }
+    }
+}
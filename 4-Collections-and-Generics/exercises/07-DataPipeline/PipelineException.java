@@ -0,0 +1,10 @@
+/**
+ * Thrown to the consumer of a pipeline run that could not complete
+ */
+public class PipelineException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    
+    public PipelineException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -2,22 +2,63 @@
  * Statistics tracking for pipeline operations
  */
 public class PipelineStats {
+    private static final int TUNING_LOG_SIZE = 100;
+    
     private final AtomicLong inputCount;
     private final AtomicLong processedCount;
     private final AtomicLong errorCount;
     private final AtomicLong outputCount;
+    private volatile List<StageStats> stageStats;
+    private final AtomicLong tuningCount;
+    private final Deque<String> tuningLog;
     
     public PipelineStats() {
         this.inputCount = new AtomicLong();
         this.processedCount = new AtomicLong();
         this.errorCount = new AtomicLong();
         this.outputCount = new AtomicLong();
+        this.stageStats = List.of();
+        this.tuningCount = new AtomicLong();
+        this.tuningLog = new ConcurrentLinkedDeque<>();
     }
     
     public void recordInput() { inputCount.incrementAndGet(); }
+    public void recordInput(int count) { inputCount.addAndGet(count); }
     public void recordProcessed() { processedCount.incrementAndGet(); }
+    public void recordProcessed(int count) { processedCount.addAndGet(count); }
     public void recordError() { errorCount.incrementAndGet(); }
     public void recordOutput() { outputCount.incrementAndGet(); }
+    public void registerStages(List<StageStats> stages) { stageStats = List.copyOf(stages); }
+    
+    /**
+     * Per-stage statistics of the latest run, in pipeline order
+     */
+    public List<StageStats> getStageStats() { return stageStats; }
+    
+    /**
+     * The stage of the latest run whose workers are busiest, or null
+     * before the first run
+     */
+    public StageStats getBottleneck() {
+        return stageStats.stream()
+            .max(Comparator.comparingDouble(StageStats::getUtilization))
+            .orElse(null);
+    }
+    
+    public void recordTuning(String decision) {
+        tuningCount.incrementAndGet();
+        tuningLog.addLast(Instant.now() + " " + decision);
+        while (tuningLog.size() > TUNING_LOG_SIZE) {
+            tuningLog.pollFirst();
+        }
+    }
+    
+    public long getTuningCount() { return tuningCount.get(); }
+    
+    /**
+     * The latest worker moves made by the auto-tuner, oldest first
+     */
+    public List<String> getTuningLog() { return new ArrayList<>(tuningLog); }
     
     public double getSuccessRate() {
         long total = processedCount.get();
@@ -28,9 +69,9 @@ public class PipelineStats {
     @Override
     public String toString() {
         return String.format(
-            "PipelineStats{input=%d, processed=%d, errors=%d, output=%d, successRate=%.2f}",
+            "PipelineStats{input=%d, processed=%d, errors=%d, output=%d, successRate=%.2f, tunings=%d}",
             inputCount.get(), processedCount.get(), errorCount.get(), 
-            outputCount.get(), getSuccessRate()
+            outputCount.get(), getSuccessRate(), tuningCount.get()
         );
     }
 } 
\ No newline at end of file
@@ -0,0 +1,297 @@
+/**
+ * Test cases for Pipeline
+ */
+public class PipelineTest {
+    private static final int ITEMS = 3_000;
+    
+    private Pipeline<Integer, Integer> pipeline;
+    private List<Integer> input;
+    
+    @BeforeEach
+    void setUp() {
+        pipeline = new Pipeline<Integer, Integer>(64, 1, 8)
+            .setAutoTuning(6, 10, TimeUnit.MILLISECONDS);
+        input = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            input.add(i);
+        }
+    }
+    
+    @AfterEach
+    void tearDown() {
+        pipeline.shutdown();
+    }
+    
+    @Test
+    void testTunerKeepsFixedStagesAtDeclaredParallelism() {
+        ConcurrencyProbe fixed = new ConcurrencyProbe();
+        pipeline.addStage(fixed, 1);
+        
+        assertEquals(ITEMS, pipeline.process(input).size());
+        assertEquals(1, fixed.maxConcurrent.get());
+        assertEquals(0, pipeline.getStats().getTuningCount());
+    }
+    
+    @Test
+    void testTunerScalesScalableStages() {
+        ConcurrencyProbe scalable = new ConcurrencyProbe();
+        pipeline.addStage(scalable, 1, true);
+        
+        assertEquals(ITEMS, pipeline.process(input).size());
+        assertTrue(pipeline.getStats().getTuningCount() > 0);
+        assertTrue(scalable.maxConcurrent.get() > 1, "never ran concurrently");
+    }
+    
+    @Test
+    void testStatefulStageCannotBeScalable() {
+        StatefulStage<Integer, Integer> stateful = new StatefulStage<Integer, Integer>() {
+            @Override
+            public Integer process(Integer input) {
+                return input;
+            }
+            
+            @Override
+            public Serializable snapshotState() {
+                return 0;
+            }
+            
+            @Override
+            public void restoreState(Serializable state) {
+            }
+        };
+        
+        assertThrows(IllegalArgumentException.class, () -> pipeline.addStage(stateful, 1, true));
+    }
+    
+    @Test
+    void testAnonymousStageIsNamedAfterItsType() {
+        pipeline.addStage(new Stage<Integer, Integer>() {
+            @Override
+            public Integer process(Integer input) {
+                return input;
+            }
+        });
+        pipeline.process(input);
+        
+        assertEquals("0:Stage", pipeline.getStats().getStageStats().get(0).getName());
+    }
+    
+    @Test
+    void testUnboundedSourceIsReadOnlyAsFarAsTheBuffers() throws InterruptedException {
+        AtomicInteger read = new AtomicInteger();
+        Iterator<Integer> endless = new Iterator<Integer>() {
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+            
+            @Override
+            public Integer next() {
+                return read.getAndIncrement();
+            }
+        };
+        pipeline.addStage(new TransformStage<Integer, Integer>(x -> x + 1));
+        
+        Pipeline<Integer, Integer>.Results results = pipeline.stream(endless);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Integer.valueOf(i + 1), results.next());
+        }
+        Thread.sleep(100);
+        // Two queues of 64 items, plus a batch of 8 in the hands of the source, the stage and the consumer
+        assertTrue(read.get() <= 10 + 2 * 64 + 3 * 8, "read " + read.get() + " items ahead");
+        
+        results.close();
+        assertFalse(results.hasNext());
+        Thread.sleep(50);
+        int readAtClose = read.get();
+        Thread.sleep(100);
+        assertEquals(readAtClose, read.get());
+    }
+    
+    @Test
+    void testFusedAndUnfusedRunsAgree() {
+        List<Integer> expected = new ArrayList<>();
+        for (int x : input) {
+            if (x % 4 != 0) {
+                int y = x * 3 + 1;
+                if (y % 5 != 0) {
+                    expected.add(y / 2);
+                }
+            }
+        }
+        Pipeline<Integer, Integer> unfused = new Pipeline<Integer, Integer>(64, 1, 8).setFusion(false);
+        try {
+            for (Pipeline<Integer, Integer> p : List.of(pipeline, unfused)) {
+                p.addStage(new TransformStage<Integer, Integer>(x -> x * 3, x -> x % 4 != 0))
+                    .addStage(new TransformStage<Integer, Integer>(x -> x + 1))
+                    .addStage(new TransformStage<Integer, Integer>(x -> x / 2, x -> x % 5 != 0));
+            }
+            
+            assertEquals(expected, pipeline.process(input));
+            assertEquals(1, pipeline.getStats().getStageStats().size());
+            assertEquals(expected, unfused.process(input));
+            assertEquals(3, unfused.getStats().getStageStats().size());
+        } finally {
+            unfused.shutdown();
+        }
+    }
+    
+    @Test
+    void testOrderedRunKeepsInputOrderAcrossWorkers() {
+        pipeline.setOrdered(true)
+            .addStage(new TransformStage<Integer, Integer>(x -> {
+                LockSupport.parkNanos((x * 7919L) % 50 * 1_000); // uneven, so workers overtake each other
+                return x;
+            }, x -> x % 3 != 0), 4)
+            .addStage(new TransformStage<Integer, Integer>(x -> x * 2), 3);
+        
+        List<Integer> expected = new ArrayList<>();
+        for (int x : input) {
+            if (x % 3 != 0) {
+                expected.add(x * 2);
+            }
+        }
+        assertEquals(expected, pipeline.process(input));
+    }
+    
+    @Test
+    void testThrowingHandleErrorFailsTheRun() {
+        pipeline.addStage(new Stage<Integer, Integer>() {
+            @Override
+            public Integer process(Integer input) {
+                if (input == 100) {
+                    throw new IllegalArgumentException("bad item");
+                }
+                return input;
+            }
+            
+            @Override
+            public void handleError(Integer input, Exception e) {
+                throw new IllegalStateException("giving up on " + input, e);
+            }
+        });
+        
+        PipelineException failure = assertThrows(PipelineException.class, () -> pipeline.process(input));
+        assertTrue(failure.getCause() instanceof IllegalStateException);
+    }
+    
+    @Test
+    void testHandledErrorSkipsOnlyTheItem() {
+        List<Integer> failed = new CopyOnWriteArrayList<>();
+        pipeline.addStage(new Stage<Integer, Integer>() {
+            @Override
+            public Integer process(Integer input) {
+                if (input == 100) {
+                    throw new IllegalArgumentException("bad item");
+                }
+                return input;
+            }
+            
+            @Override
+            public void handleError(Integer input, Exception e) {
+                failed.add(input);
+            }
+        });
+        
+        assertEquals(ITEMS - 1, pipeline.process(input).size());
+        assertEquals(List.of(100), failed);
+    }
+    
+    @Test
+    void testCheckpointedRunResumesAfterCrashWithTuningOn() throws IOException {
+        Path directory = Files.createTempDirectory("pipeline-checkpoints");
+        CheckpointStore store = new CheckpointStore(directory);
+        Map<Long, Integer> written = new ConcurrentHashMap<>();
+        RunningTotal total = new RunningTotal();
+        withStatefulStage(pipeline, total);
+        
+        // The sink dies partway through, as the process would in a crash
+        IdempotentSink<Integer> crashing = (position, result) -> {
+            if (written.size() == ITEMS * 2 / 3) {
+                throw new IOException("crash");
+            }
+            written.put(position, result);
+        };
+        assertThrows(IOException.class, () -> pipeline.runCheckpointed(
+            ReplayableSource.of(input), crashing, store, 10, TimeUnit.MILLISECONDS));
+        assertTrue(pipeline.getStats().getTuningCount() > 0, "tuner never moved a worker");
+        CheckpointStore.Checkpoint checkpoint = store.latest();
+        assertTrue(checkpoint != null && checkpoint.getOutputPosition() > 0, "no checkpoint before the crash");
+        
+        Pipeline<Integer, Integer> resumed = new Pipeline<Integer, Integer>(64, 1, 8)
+            .setAutoTuning(6, 10, TimeUnit.MILLISECONDS);
+        RunningTotal resumedTotal = new RunningTotal();
+        withStatefulStage(resumed, resumedTotal);
+        try {
+            resumed.runCheckpointed(ReplayableSource.of(input), written::put, store, 10, TimeUnit.MILLISECONDS);
+        } finally {
+            resumed.shutdown();
+            store.clear();
+            Files.delete(directory);
+        }
+        
+        assertEquals(ITEMS, written.size());
+        int sum = 0;
+        for (int i = 0; i < ITEMS; i++) {
+            sum += i;
+            assertEquals(Integer.valueOf(sum), written.get((long) i), "wrong result at position " + i);
+        }
+        assertEquals(1, total.maxConcurrent.get());
+        assertEquals(1, resumedTotal.maxConcurrent.get());
+    }
+    
+    /**
+     * Puts the running total between two scalable stages, so the tuner has
+     * work to move around it
+     */
+    private static void withStatefulStage(Pipeline<Integer, Integer> pipeline, RunningTotal total) {
+        pipeline.addStage(new ConcurrencyProbe(), 1, true)
+            .addStage(total, 1)
+            .addStage(new ConcurrencyProbe(), 1, true);
+    }
+    
+    /**
+     * A slow stage that records how many threads were ever inside it at once
+     */
+    private static final class ConcurrencyProbe implements Stage<Integer, Integer> {
+        final AtomicInteger inside = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+        
+        @Override
+        public Integer process(Integer input) {
+            maxConcurrent.accumulateAndGet(inside.incrementAndGet(), Math::max);
+            LockSupport.parkNanos(100_000);
+            inside.decrementAndGet();
+            return input;
+        }
+    }
+    
+    /**
+     * Sums its inputs; loses updates if more than one worker runs it
+     */
+    private static final class RunningTotal implements StatefulStage<Integer, Integer> {
+        final AtomicInteger inside = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+        private int total;
+        
+        @Override
+        public Integer process(Integer input) {
+            maxConcurrent.accumulateAndGet(inside.incrementAndGet(), Math::max);
+            int result = total + input;
+            LockSupport.parkNanos(200_000); // the bottleneck, so the tuner wants to widen it
+            total = result;
+            inside.decrementAndGet();
+            return result;
+        }
+        
+        @Override
+        public Serializable snapshotState() {
+            return total;
+        }
+        
+        @Override
+        public void restoreState(Serializable state) {
+            total = (Integer) state;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+/**
+ * Input for a checkpointed run, which may have to be read again from a
+ * position saved in a checkpoint
+ */
+public interface ReplayableSource<I> {
+    /**
+     * Opens the input at the given number of items from its start
+     */
+    Iterator<I> open(long offset);
+    
+    /**
+     * A source over items that are read again from the start and skipped
+     * up to the offset; fine for inputs that are cheap to re-read
+     */
+    static <I> ReplayableSource<I> of(Iterable<I> items) {
+        return offset -> {
+            Iterator<I> iterator = items.iterator();
+            for (long skipped = 0; skipped < offset && iterator.hasNext(); skipped++) {
+                iterator.next();
+            }
+            return iterator;
+        };
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Per-stage statistics for one pipeline run: how many workers the stage
+ * has, how much of their time they spend processing rather than waiting
+ * on a neighbour, and how many batches are queued in front of it. The
+ * stage with the highest utilization is the bottleneck.
+ */
+public class StageStats {
+    private final String name;
+    private volatile int workers;
+    private final IntSupplier depth;
+    private final AtomicLong itemCount;
+    private final AtomicLong busyNanos;
+    private final AtomicLong stoppedNanos;
+    private final AtomicLong liveStartSum;
+    private final AtomicInteger liveWorkers;
+    
+    public StageStats(String name, int workers, IntSupplier depth) {
+        this.name = name;
+        this.workers = workers;
+        this.depth = depth;
+        this.itemCount = new AtomicLong();
+        this.busyNanos = new AtomicLong();
+        this.stoppedNanos = new AtomicLong();
+        this.liveStartSum = new AtomicLong();
+        this.liveWorkers = new AtomicInteger();
+    }
+    
+    public void recordWorkerStart(long startNanos) {
+        liveStartSum.addAndGet(startNanos);
+        liveWorkers.incrementAndGet();
+    }
+    
+    public void recordWorkerStop(long startNanos, long stopNanos) {
+        stoppedNanos.addAndGet(stopNanos - startNanos);
+        liveStartSum.addAndGet(-startNanos);
+        liveWorkers.decrementAndGet();
+    }
+    
+    public void setWorkers(int workers) { this.workers = workers; }
+    
+    public void recordBatch(int items, long nanos) {
+        itemCount.addAndGet(items);
+        busyNanos.addAndGet(nanos);
+    }
+    
+    public String getName() { return name; }
+    public int getWorkers() { return workers; }
+    public int getQueueDepth() { return depth.getAsInt(); }
+    public long getItemCount() { return itemCount.get(); }
+    public long getBusyNanos() { return busyNanos.get(); }
+    
+    /**
+     * Processing time per item, averaged over the run so far
+     */
+    public double getServiceNanos() {
+        long items = itemCount.get();
+        return items == 0 ? 0.0 : (double) busyNanos.get() / items;
+    }
+    
+    /**
+     * Share of the workers' lifetime spent processing, from 0 to 1
+     */
+    public double getUtilization() {
+        long alive = stoppedNanos.get() + liveWorkers.get() * System.nanoTime() - liveStartSum.get();
+        return alive <= 0 ? 0.0 : Math.min(1.0, (double) busyNanos.get() / alive);
+    }
+    
+    @Override
+    public String toString() {
+        return String.format(
+            "StageStats{name=%s, workers=%d, items=%d, depth=%d, serviceTime=%.0fns, utilization=%.2f}",
+            name, workers, itemCount.get(), getQueueDepth(), getServiceNanos(), getUtilization()
+        );
+    }
+}
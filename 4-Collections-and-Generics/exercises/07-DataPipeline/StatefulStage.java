@@ -0,0 +1,13 @@
+/**
+ * A stage that keeps state across items, e.g. running totals or a dedup
+ * set. Checkpointed runs snapshot the state when every worker of the stage
+ * is between batches, and restore it when a run resumes.
+ */
+public interface StatefulStage<I, O> extends Stage<I, O> {
+    /**
+     * A copy of the state that later processing must not change
+     */
+    Serializable snapshotState();
+    
+    void restoreState(Serializable state);
+}
@@ -18,4 +18,15 @@ public class TransformStage<I, O> implements Stage<I, O> {
     public O process(I input) throws Exception {
         return filter.test(input) ? transformer.apply(input) : null;
     }
+    
+    /**
+     * Composes this stage with the next into one stage; an item this stage
+     * drops never reaches the next
+     */
+    public <R> TransformStage<I, R> andThen(TransformStage<O, R> next) {
+        return new TransformStage<>(input -> {
+            O middle = transformer.apply(input);
+            return middle != null && next.filter.test(middle) ? next.transformer.apply(middle) : null;
+        }, filter);
+    }
 } 
\ No newline at end of file
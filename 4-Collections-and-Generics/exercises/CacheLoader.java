@@ -0,0 +1,31 @@
+/**
+ * Computes values for a loading cache on a miss or refresh
+ */
+@FunctionalInterface
+public interface CacheLoader<K, V> {
+    /**
+     * Loads the value for a key; returning null means the key has no value
+     */
+    V load(K key) throws Exception;
+    
+    /**
+     * Loads several keys in one call; override to batch against the store
+     */
+    default Map<K, V> loadAll(Set<? extends K> keys) throws Exception {
+        Map<K, V> result = new HashMap<>();
+        for (K key : keys) {
+            V value = load(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Recomputes a value that is about to expire
+     */
+    default V reload(K key, V oldValue) throws Exception {
+        return load(key);
+    }
+}
@@ -1,14 +1,22 @@
 /**
- * Thread-safe cache implementation with expiration
+ * Thread-safe cache implementation with expiration.
+ *
+ * When created with a CacheLoader it also acts as a loading cache:
+ * concurrent misses on a key share one in-flight load, and entries close
+ * to expiry are refreshed in the background while the old value is served.
  */
 public class ConcurrentCache<K, V> {
     private class CacheEntry {
         V value;
         long expirationTime;
+        long refreshTime;
+        TimerWheel.Node<K> timerNode;
         
         CacheEntry(V value, long expirationTimeMillis) {
+            long now = System.currentTimeMillis();
             this.value = value;
-            this.expirationTime = System.currentTimeMillis() + expirationTimeMillis;
+            this.expirationTime = now + expirationTimeMillis;
+            this.refreshTime = expirationTime - (long) (expirationTimeMillis * refreshAheadFraction);
         }
         
         boolean isExpired() {
@@ -18,11 +26,35 @@ public class ConcurrentCache<K, V> {
     
     private final ConcurrentHashMap<K, CacheEntry> cache;
     private final long defaultExpirationMillis;
+    private final TimerWheel<K> timerWheel;
+    private final ReentrantLock expirationLock;
     private final ScheduledExecutorService cleanup;
+    private final CacheLoader<K, V> loader;
+    private final double refreshAheadFraction;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight;
+    private final ExecutorService loaderExecutor;
     
     public ConcurrentCache(long defaultExpirationMillis, long cleanupIntervalMillis) {
+        this(defaultExpirationMillis, cleanupIntervalMillis, null, 0.0);
+    }
+    
+    /**
+     * Creates a loading cache. An entry is refreshed in the background once
+     * it is within refreshAheadFraction of its TTL (0 disables refresh-ahead).
+     */
+    public ConcurrentCache(long defaultExpirationMillis, long cleanupIntervalMillis,
+                           CacheLoader<K, V> loader, double refreshAheadFraction) {
+        if (refreshAheadFraction < 0.0 || refreshAheadFraction >= 1.0) {
+            throw new IllegalArgumentException("refreshAheadFraction must be in [0, 1)");
+        }
         this.cache = new ConcurrentHashMap<>();
         this.defaultExpirationMillis = defaultExpirationMillis;
+        this.timerWheel = new TimerWheel<>(System.currentTimeMillis());
+        this.expirationLock = new ReentrantLock();
+        this.loader = loader;
+        this.refreshAheadFraction = refreshAheadFraction;
+        this.inFlight = new ConcurrentHashMap<>();
+        this.loaderExecutor = loader != null ? Executors.newCachedThreadPool() : null;
         
         this.cleanup = Executors.newSingleThreadScheduledExecutor();
         this.cleanup.scheduleAtFixedRate(
@@ -38,25 +70,192 @@ public class ConcurrentCache<K, V> {
     }
     
     public void put(K key, V value, long expirationMillis) {
-        cache.put(key, new CacheEntry(value, expirationMillis));
+        CacheEntry entry = new CacheEntry(value, expirationMillis);
+        CacheEntry previous = cache.put(key, entry);
+        
+        expirationLock.lock();
+        try {
+            if (previous != null) {
+                timerWheel.deschedule(previous.timerNode);
+            }
+            entry.timerNode = timerWheel.schedule(key, entry.expirationTime);
+            timerWheel.advance(System.currentTimeMillis(), this::expire);
+        } finally {
+            expirationLock.unlock();
+        }
     }
     
     public Optional<V> get(K key) {
         CacheEntry entry = cache.get(key);
         
-        if (entry == null || entry.isExpired()) {
-            cache.remove(key);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        
+        if (entry.isExpired()) {
+            if (cache.remove(key, entry)) {
+                expirationLock.lock();
+                try {
+                    timerWheel.deschedule(entry.timerNode);
+                } finally {
+                    expirationLock.unlock();
+                }
+            }
             return Optional.empty();
         }
         
         return Optional.of(entry.value);
     }
     
+    /**
+     * Returns the cached value or loads it, sharing the load with any
+     * concurrent callers for the same key. Loader failures surface as
+     * CompletionException.
+     */
+    public V getOrLoad(K key) {
+        return getAsync(key, false).join();
+    }
+    
+    /**
+     * Asynchronous variant of getOrLoad; misses are loaded on the loader pool
+     */
+    public CompletableFuture<V> getAsync(K key) {
+        return getAsync(key, true);
+    }
+    
+    /**
+     * Returns values for all keys, loading every miss in one loadAll call.
+     * Keys with no value are absent from the result.
+     */
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        requireLoader();
+        Map<K, V> result = new HashMap<>();
+        Map<K, CompletableFuture<V>> pending = new HashMap<>();
+        Map<K, CompletableFuture<V>> owned = new HashMap<>();
+        
+        for (K key : keys) {
+            V cached = getFresh(key);
+            if (cached != null) {
+                result.put(key, cached);
+                continue;
+            }
+            CompletableFuture<V> future = new CompletableFuture<>();
+            CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+            if (existing != null) {
+                pending.put(key, existing);
+            } else {
+                owned.put(key, future);
+            }
+        }
+        
+        if (!owned.isEmpty()) {
+            try {
+                Map<K, V> loaded = loader.loadAll(owned.keySet());
+                owned.forEach((key, future) -> {
+                    V value = loaded.get(key);
+                    if (value != null) {
+                        put(key, value);
+                    }
+                    inFlight.remove(key, future);
+                    future.complete(value);
+                });
+            } catch (Exception e) {
+                owned.forEach((key, future) -> {
+                    inFlight.remove(key, future);
+                    future.completeExceptionally(e);
+                });
+                throw new CompletionException(e);
+            }
+            pending.putAll(owned);
+        }
+        
+        pending.forEach((key, future) -> {
+            V value = future.join();
+            if (value != null) {
+                result.put(key, value);
+            }
+        });
+        return result;
+    }
+    
+    private CompletableFuture<V> getAsync(K key, boolean async) {
+        requireLoader();
+        V cached = getFresh(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing;
+        }
+        if (async) {
+            loaderExecutor.execute(() -> load(key, future, null));
+        } else {
+            load(key, future, null);
+        }
+        return future;
+    }
+    
+    /**
+     * Returns an unexpired value, kicking off a refresh-ahead if it is due
+     */
+    private V getFresh(K key) {
+        CacheEntry entry = cache.get(key);
+        if (entry == null || entry.isExpired()) {
+            return null;
+        }
+        if (refreshAheadFraction > 0.0 && System.currentTimeMillis() >= entry.refreshTime) {
+            CompletableFuture<V> future = new CompletableFuture<>();
+            if (inFlight.putIfAbsent(key, future) == null) {
+                loaderExecutor.execute(() -> load(key, future, entry.value));
+            }
+        }
+        return entry.value;
+    }
+    
+    private void load(K key, CompletableFuture<V> future, V oldValue) {
+        try {
+            V value = oldValue == null ? loader.load(key) : loader.reload(key, oldValue);
+            if (value != null) {
+                put(key, value);
+            }
+            // Publish to the cache before leaving the in-flight map
+            inFlight.remove(key, future);
+            future.complete(value);
+        } catch (Exception e) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+        }
+    }
+    
+    private void requireLoader() {
+        if (loader == null) {
+            throw new IllegalStateException("cache was created without a CacheLoader");
+        }
+    }
+    
+    private void expire(K key) {
+        CacheEntry entry = cache.get(key);
+        if (entry != null && entry.isExpired()) {
+            cache.remove(key, entry);
+        }
+    }
+    
     private void removeExpiredEntries() {
-        cache.entrySet().removeIf(entry -> entry.getValue().isExpired());
+        expirationLock.lock();
+        try {
+            timerWheel.advance(System.currentTimeMillis(), this::expire);
+        } finally {
+            expirationLock.unlock();
+        }
     }
     
     public void shutdown() {
         cleanup.shutdown();
+        if (loaderExecutor != null) {
+            loaderExecutor.shutdown();
+        }
     }
 } 
\ No newline at end of file
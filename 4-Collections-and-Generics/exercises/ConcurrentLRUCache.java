@@ -0,0 +1,369 @@
+/**
+ * Thread-safe, size-bounded LRU cache split into independently locked segments.
+ *
+ * Keys are hashed to one of N segments that split the capacity between them,
+ * so threads working on different segments never contend. In exact mode
+ * every segment is an access-ordered LinkedHashMap behind a lock. In
+ * approximate mode every segment is a CLOCK (second-chance) ring over a
+ * ConcurrentHashMap: a read only sets a reference bit and never locks,
+ * and the eviction hand skips entries that were referenced since its
+ * last pass.
+ */
+public class ConcurrentLRUCache<K, V> {
+    private final Segment<K, V>[] segments;
+    private final int segmentMask;
+    
+    public ConcurrentLRUCache(int capacity) {
+        this(capacity, Runtime.getRuntime().availableProcessors(), false);
+    }
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ConcurrentLRUCache(int capacity, int segmentCount, boolean approximate) {
+        if (capacity <= 0 || segmentCount <= 0) {
+            throw new IllegalArgumentException("capacity and segmentCount must be positive");
+        }
+        int count = Integer.highestOneBit(Math.min(segmentCount, capacity) * 2 - 1);
+        if (count > capacity) {
+            count >>= 1; // every segment must hold at least one entry
+        }
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            // The first capacity % count segments take one extra, so the total is exactly capacity
+            int segmentCapacity = capacity / count + (i < capacity % count ? 1 : 0);
+            segments[i] = approximate
+                ? new ClockSegment<>(segmentCapacity)
+                : new LruSegment<>(segmentCapacity);
+        }
+        this.segmentMask = count - 1;
+    }
+    
+    public V get(K key) {
+        return segmentFor(key).get(key);
+    }
+    
+    public V put(K key, V value) {
+        return segmentFor(key).put(key, value, false);
+    }
+    
+    public V remove(K key) {
+        return segmentFor(key).remove(key);
+    }
+    
+    public boolean containsKey(K key) {
+        return segmentFor(key).containsKey(key);
+    }
+    
+    public V getOrDefault(K key, Supplier<V> defaultValueSupplier) {
+        return segmentFor(key).computeIfAbsent(key, defaultValueSupplier);
+    }
+    
+    /**
+     * Returns up to n keys, most recently used first. Exact within a
+     * segment in LRU mode; approximate in CLOCK mode.
+     */
+    public List<K> getMostRecentKeys(int n) {
+        List<Node<K, V>> candidates = new ArrayList<>();
+        for (Segment<K, V> segment : segments) {
+            segment.collectRecent(n, candidates);
+        }
+        return candidates.stream()
+                         .sorted(Comparator.comparingLong((Node<K, V> node) -> node.stamp).reversed())
+                         .limit(n)
+                         .map(node -> node.key)
+                         .collect(Collectors.toList());
+    }
+    
+    public void putAll(Map<K, V> map, boolean skipExisting) {
+        map.forEach((key, value) -> segmentFor(key).put(key, value, skipExisting));
+    }
+    
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+    
+    private Segment<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & segmentMask];
+    }
+    
+    private static final class Node<K, V> {
+        final K key;
+        volatile V value;
+        volatile long stamp;
+        volatile boolean referenced;
+        int slot; // ring position, CLOCK mode only
+        
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+            this.stamp = System.nanoTime();
+        }
+    }
+    
+    private abstract static class Segment<K, V> {
+        final int capacity;
+        final ReentrantLock lock = new ReentrantLock();
+        
+        Segment(int capacity) {
+            this.capacity = capacity;
+        }
+        
+        abstract V get(K key);
+        abstract V put(K key, V value, boolean onlyIfAbsent);
+        abstract V remove(K key);
+        abstract boolean containsKey(K key);
+        abstract V computeIfAbsent(K key, Supplier<V> supplier);
+        abstract void collectRecent(int n, List<Node<K, V>> into);
+        abstract int size();
+    }
+    
+    /**
+     * Exact LRU: every operation, including get, takes the segment lock
+     */
+    private static final class LruSegment<K, V> extends Segment<K, V> {
+        private final LinkedHashMap<K, Node<K, V>> map;
+        
+        LruSegment(int capacity) {
+            super(capacity);
+            this.map = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, Node<K, V>> eldest) {
+                    return size() > LruSegment.this.capacity;
+                }
+            };
+        }
+        
+        @Override
+        V get(K key) {
+            lock.lock();
+            try {
+                Node<K, V> node = map.get(key);
+                if (node == null) {
+                    return null;
+                }
+                node.stamp = System.nanoTime();
+                return node.value;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        @Override
+        V put(K key, V value, boolean onlyIfAbsent) {
+            lock.lock();
+            try {
+                Node<K, V> node = map.get(key);
+                if (node == null) {
+                    map.put(key, new Node<>(key, value));
+                    return null;
+                }
+                V previous = node.value;
+                if (!onlyIfAbsent) {
+                    node.value = value;
+                    node.stamp = System.nanoTime();
+                }
+                return previous;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        @Override
+        V remove(K key) {
+            lock.lock();
+            try {
+                Node<K, V> node = map.remove(key);
+                return node == null ? null : node.value;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        @Override
+        boolean containsKey(K key) {
+            lock.lock();
+            try {
+                return map.containsKey(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        @Override
+        V computeIfAbsent(K key, Supplier<V> supplier) {
+            lock.lock();
+            try {
+                Node<K, V> node = map.get(key);
+                if (node != null) {
+                    node.stamp = System.nanoTime();
+                    return node.value;
+                }
+                V value = supplier.get();
+                map.put(key, new Node<>(key, value));
+                return value;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        @Override
+        void collectRecent(int n, List<Node<K, V>> into) {
+            lock.lock();
+            try {
+                // Access order iterates eldest first, so keep the tail
+                int skip = Math.max(0, map.size() - n);
+                Iterator<Node<K, V>> it = map.values().iterator();
+                for (int i = 0; it.hasNext(); i++) {
+                    Node<K, V> node = it.next();
+                    if (i >= skip) {
+                        into.add(node);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        @Override
+        int size() {
+            lock.lock();
+            try {
+                return map.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+    
+    /**
+     * Approximate LRU (CLOCK): reads are lock-free, writes lock the segment
+     */
+    private static final class ClockSegment<K, V> extends Segment<K, V> {
+        private final ConcurrentHashMap<K, Node<K, V>> map;
+        private final Node<K, V>[] ring;
+        private int hand;
+        private int used;
+        
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ClockSegment(int capacity) {
+            super(capacity);
+            this.map = new ConcurrentHashMap<>();
+            this.ring = new Node[capacity];
+        }
+        
+        @Override
+        V get(K key) {
+            Node<K, V> node = map.get(key);
+            if (node == null) {
+                return null;
+            }
+            if (!node.referenced) {
+                node.referenced = true;
+                node.stamp = System.nanoTime();
+            }
+            return node.value;
+        }
+        
+        @Override
+        V put(K key, V value, boolean onlyIfAbsent) {
+            lock.lock();
+            try {
+                Node<K, V> node = map.get(key);
+                if (node != null) {
+                    V previous = node.value;
+                    if (!onlyIfAbsent) {
+                        node.value = value;
+                        node.referenced = true;
+                    }
+                    return previous;
+                }
+                insert(new Node<>(key, value));
+                return null;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        @Override
+        V remove(K key) {
+            lock.lock();
+            try {
+                Node<K, V> node = map.remove(key);
+                if (node == null) {
+                    return null;
+                }
+                // Keep the ring dense by moving the last slot into the hole
+                Node<K, V> last = ring[--used];
+                ring[node.slot] = last;
+                last.slot = node.slot;
+                ring[used] = null;
+                if (hand >= used) {
+                    hand = 0;
+                }
+                return node.value;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        @Override
+        boolean containsKey(K key) {
+            return map.containsKey(key);
+        }
+        
+        @Override
+        V computeIfAbsent(K key, Supplier<V> supplier) {
+            V value = get(key);
+            if (value != null) {
+                return value;
+            }
+            lock.lock();
+            try {
+                Node<K, V> node = map.get(key);
+                if (node != null) {
+                    return node.value;
+                }
+                value = supplier.get();
+                insert(new Node<>(key, value));
+                return value;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        private void insert(Node<K, V> node) {
+            if (used < capacity) {
+                node.slot = used;
+                ring[used++] = node;
+            } else {
+                // Second chance: clear reference bits until an unreferenced victim turns up
+                while (ring[hand].referenced) {
+                    ring[hand].referenced = false;
+                    hand = (hand + 1) % capacity;
+                }
+                map.remove(ring[hand].key);
+                node.slot = hand;
+                ring[hand] = node;
+                hand = (hand + 1) % capacity;
+            }
+            map.put(node.key, node);
+        }
+        
+        @Override
+        void collectRecent(int n, List<Node<K, V>> into) {
+            List<Node<K, V>> nodes = new ArrayList<>(map.values());
+            nodes.sort(Comparator.comparingLong((Node<K, V> node) -> node.stamp).reversed());
+            into.addAll(nodes.subList(0, Math.min(n, nodes.size())));
+        }
+        
+        @Override
+        int size() {
+            return map.size();
+        }
+    }
+}
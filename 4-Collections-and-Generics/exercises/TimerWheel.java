@@ -0,0 +1,166 @@
+/**
+ * Hierarchical timing wheel for expiring items in amortized O(1).
+ *
+ * Items are bucketed by expiration time into wheels of increasing span
+ * (2^10, 2^16, 2^22, 2^26 and 2^28 ticks). Advancing the clock only visits
+ * the buckets whose ticks have elapsed; items in a coarse bucket that are
+ * not yet due cascade down into a finer wheel.
+ *
+ * Times are in ticks of the caller's choosing, and the spans scale with
+ * them: with millisecond ticks they are about 1s, 1m, 1h, 18h and 3d; with
+ * 1024ns ticks about 1ms, 67ms, 4.3s, 69s and 4.6m.
+ *
+ * Not thread-safe; callers must guard all operations with a lock.
+ */
+public class TimerWheel<T> {
+    private static final int[] BUCKETS = { 64, 64, 16, 4, 1 };
+    private static final long[] SPANS = {
+        1L << 10, // 1.02s at 1ms ticks
+        1L << 16, // 1.09m
+        1L << 22, // 1.17h
+        1L << 26, // 18.6h
+        1L << 28, // 3.11d
+        1L << 28
+    };
+    private static final int[] SHIFT = { 10, 16, 22, 26, 28 };
+    
+    private final Node<T>[][] wheel;
+    private long time;
+    private int size;
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimerWheel(long currentTime) {
+        this.wheel = new Node[BUCKETS.length][];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Node[BUCKETS[i]];
+            for (int j = 0; j < wheel[i].length; j++) {
+                wheel[i][j] = new Node<>(null, 0);
+            }
+        }
+        this.time = currentTime;
+    }
+    
+    /**
+     * Schedules an item and returns the handle used to cancel it
+     */
+    public Node<T> schedule(T item, long expirationTime) {
+        Node<T> node = new Node<>(item, expirationTime);
+        link(findBucket(expirationTime), node);
+        size++;
+        return node;
+    }
+    
+    /**
+     * Removes a scheduled item in O(1); a no-op if it already fired
+     */
+    public void deschedule(Node<?> node) {
+        if (node != null && node.next != null) {
+            unlink(node);
+            size--;
+        }
+    }
+    
+    /**
+     * Moves the clock forward, handing every item now past due to the consumer
+     */
+    public void advance(long currentTime, Consumer<T> onExpired) {
+        long previousTime = time;
+        if (currentTime <= previousTime) {
+            return;
+        }
+        time = currentTime;
+        for (int i = 0; i < SHIFT.length; i++) {
+            long previousTicks = previousTime >>> SHIFT[i];
+            long currentTicks = currentTime >>> SHIFT[i];
+            if (currentTicks - previousTicks <= 0L) {
+                break;
+            }
+            expire(i, previousTicks, currentTicks - previousTicks, onExpired);
+        }
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    private void expire(int level, long previousTicks, long delta, Consumer<T> onExpired) {
+        Node<T>[] buckets = wheel[level];
+        int mask = buckets.length - 1;
+        int steps = (int) Math.min(1 + delta, buckets.length);
+        int start = (int) (previousTicks & mask);
+        int end = start + steps;
+        
+        for (int i = start; i < end; i++) {
+            Node<T> sentinel = buckets[i & mask];
+            Node<T> node = sentinel.next;
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            
+            while (node != sentinel) {
+                Node<T> next = node.next;
+                node.prev = null;
+                node.next = null;
+                
+                if (node.time < time) {
+                    size--;
+                    onExpired.accept(node.item);
+                } else {
+                    link(findBucket(node.time), node);
+                }
+                node = next;
+            }
+        }
+    }
+    
+    private Node<T> findBucket(long expirationTime) {
+        long effective = Math.max(expirationTime, time);
+        long duration = effective - time;
+        int last = wheel.length - 1;
+        for (int i = 0; i < last; i++) {
+            if (duration < SPANS[i + 1]) {
+                long ticks = effective >>> SHIFT[i];
+                return wheel[i][(int) (ticks & (wheel[i].length - 1))];
+            }
+        }
+        return wheel[last][0];
+    }
+    
+    private static <T> void link(Node<T> sentinel, Node<T> node) {
+        node.prev = sentinel.prev;
+        node.next = sentinel;
+        sentinel.prev.next = node;
+        sentinel.prev = node;
+    }
+    
+    private static <T> void unlink(Node<T> node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+    }
+    
+    /**
+     * Handle for a scheduled item; sentinels double as bucket heads
+     */
+    public static final class Node<T> {
+        private final T item;
+        private final long time;
+        private Node<T> prev;
+        private Node<T> next;
+        
+        Node(T item, long time) {
+            this.item = item;
+            this.time = time;
+            this.prev = this;
+            this.next = this;
+        }
+        
+        public T getItem() {
+            return item;
+        }
+        
+        public long getTime() {
+            return time;
+        }
+    }
+}